@@ -0,0 +1,42 @@
+package com.somecode.client.configure;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 客户端连接参数信息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionInfo implements Serializable {
+
+    /**
+     * 每个服务节点建立的连接数
+     */
+    private Integer channelsPerNode;
+
+    /**
+     * 是否在创建代理的时候就建立连接
+     */
+    private Boolean eager;
+
+    /**
+     * 建立连接的超时时间
+     */
+    private Integer connectTimeout;
+
+    /**
+     * 断线重连的初始间隔
+     */
+    private Integer reconnectInitialDelay;
+
+    /**
+     * 断线重连的最大间隔
+     */
+    private Integer reconnectMaxDelay;
+
+}
@@ -0,0 +1,178 @@
+package com.somecode.client.configure;
+
+import com.somecode.common.transport.Transport;
+import com.somecode.common.transport.TransportInfo;
+import com.somecode.common.util.Holder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 根据配置文件初始化客户端的基础配置
+ */
+public class InitClientConfiguration {
+
+    /**
+     * 加载日志
+     */
+    private static Logger log = LoggerFactory.getLogger(InitClientConfiguration.class);
+
+    /**
+     * 默认加载路径
+     */
+    private static final String CLIENT_PATH = "client-configuration.yml";
+
+    /**
+     * 默认配置
+     */
+    private static final Integer CHANNELS_PER_NODE = 1;
+    private static final Integer CONNECT_TIMEOUT = 3000;
+    private static final Integer RECONNECT_INITIAL_DELAY = 100;
+    private static final Integer RECONNECT_MAX_DELAY = 10000;
+
+    /**
+     * 配置文件所有内容
+     */
+    private static Map clientConfigurationMap = null;
+
+    /**
+     * 连接配置
+     */
+    private static ConnectionInfo connectionInfo = null;
+
+    /**
+     * 传输层配置
+     */
+    private static TransportInfo transportInfo = null;
+
+    /**
+     * 做个锁用于加载配置文件
+     */
+    private static Holder holder = new Holder<>();
+
+    /**
+     * 不允许创建对象
+     */
+    private InitClientConfiguration() {
+    }
+
+    /**
+     * 加载配置文件
+     * 配置文件不存在的时候全部使用默认配置
+     */
+    private static void initClientConfiguration() {
+        Map configurationMap = Collections.emptyMap();
+        try {
+            // 获取默认配置文件路径
+            URL url = InitClientConfiguration.class.getClassLoader().getResource(CLIENT_PATH);
+            if (url != null) {
+                // 开始解析文件
+                Yaml yaml = new Yaml();
+                Map fileMap = yaml.load(new BufferedReader(new InputStreamReader(url.openStream(), "utf-8")));
+                if (fileMap != null && fileMap.get("Client") != null) {
+                    configurationMap = (Map) fileMap.get("Client");
+                }
+            } else {
+                log.info(CLIENT_PATH + "不存在classes路径下，使用默认配置！");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        clientConfigurationMap = configurationMap;
+    }
+
+    /**
+     * 获取配置文件中的一项，没有加载过就先加载
+     */
+    public static Object requireClientConfigure(String configurationName) {
+        if (clientConfigurationMap == null) {
+            synchronized (holder) {
+                if (clientConfigurationMap == null) {
+                    initClientConfiguration();
+                }
+            }
+        }
+        return clientConfigurationMap.get(configurationName);
+    }
+
+    /**
+     * 获取客户端IO线程数，没有配置就使用CPU核数
+     */
+    public static int getIoThreads() {
+        Object ioThreads = requireClientConfigure("ioThreads");
+        if (ioThreads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int threads = Integer.parseInt(ioThreads.toString());
+            if (threads < 1) {
+                throw new IllegalArgumentException("ioThreads不能小于1！");
+            }
+            return threads;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("客户端ioThreads配置出错！", e);
+        }
+    }
+
+    /**
+     * 获取传输层配置
+     */
+    public static TransportInfo getTransportInfo() {
+        if (transportInfo == null) {
+            synchronized (holder) {
+                if (transportInfo == null) {
+                    transportInfo = Transport.parse((Map) requireClientConfigure("transport"));
+                }
+            }
+        }
+        return transportInfo;
+    }
+
+    /**
+     * 获取连接配置
+     */
+    public static ConnectionInfo getConnectionInfo() {
+        if (connectionInfo == null) {
+            synchronized (holder) {
+                if (connectionInfo == null) {
+                    Map connectionMap = (Map) requireClientConfigure("connection");
+                    if (connectionMap == null) {
+                        connectionMap = Collections.emptyMap();
+                    }
+                    try {
+                        connectionInfo = new ConnectionInfo(
+                                getInteger(connectionMap, "channelsPerNode", CHANNELS_PER_NODE),
+                                Boolean.valueOf(String.valueOf(connectionMap.get("eager"))),
+                                getInteger(connectionMap, "connectTimeout", CONNECT_TIMEOUT),
+                                getInteger(connectionMap, "reconnectInitialDelay", RECONNECT_INITIAL_DELAY),
+                                getInteger(connectionMap, "reconnectMaxDelay", RECONNECT_MAX_DELAY));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("客户端连接配置出错！", e);
+                    }
+                    if (connectionInfo.getChannelsPerNode() < 1) {
+                        throw new IllegalArgumentException("channelsPerNode不能小于1！");
+                    }
+                }
+            }
+        }
+        return connectionInfo;
+    }
+
+    /**
+     * 读取整数配置，没有配置就使用默认值
+     */
+    static Integer getInteger(Map map, String key, Integer defaultValue) {
+        Object value = map.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Integer.valueOf(value.toString());
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.somecode.client.connection;
+
+import com.somecode.client.configure.ConnectionInfo;
+import com.somecode.client.configure.InitClientConfiguration;
+import com.somecode.client.runtime.ClientRuntime;
+import com.somecode.common.entity.NetworkNode;
+import com.somecode.common.util.Holder;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客户端的连接管理
+ * 整个客户端共用，每个服务节点对应一个连接池，负载均衡选出哪个节点，请求就发到哪个节点的连接上
+ */
+public class ConnectionManager {
+
+    /**
+     * 节点对应的连接池
+     * 键值对：节点 = 连接池
+     */
+    private static ConcurrentHashMap<NetworkNode, NodeConnectionPool> poolMap = new ConcurrentHashMap<>();
+
+    /**
+     * 每个服务最近一次得到的节点列表，同一个节点可能同时提供多个服务
+     * 保存的是注册中心或者配置返回的列表对象本身，注册中心的监听在节点变化时整体替换列表，不会修改旧的列表
+     * 键值对：服务名 = 节点列表
+     */
+    private static ConcurrentHashMap<String, List<NetworkNode>> serviceNodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 当前所有服务的节点，为null时还没有刷新过
+     */
+    private static volatile Set<NetworkNode> presentNodes = null;
+
+    /**
+     * 有调用使用了旧的节点列表，为已经下线的节点重新建立了连接池，下一次刷新时需要清理
+     */
+    private static volatile boolean dirty = false;
+
+    /**
+     * 更新节点列表的锁
+     */
+    private static Holder holder = new Holder();
+
+    /**
+     * 不允许创建对象
+     */
+    private ConnectionManager() { }
+
+    /**
+     * 获取某个节点的一个连接，第一次获取时建立该节点的连接池
+     */
+    public static NettyClient getConnection(NetworkNode networkNode) {
+        NodeConnectionPool pool = poolMap.get(networkNode);
+        if (pool == null) {
+            pool = poolMap.computeIfAbsent(networkNode, ConnectionManager::createPool);
+            Set<NetworkNode> present = presentNodes;
+            if (present != null && !present.contains(networkNode)) {
+                dirty = true;
+            }
+        }
+        return pool.select();
+    }
+
+    /**
+     * 提前与多个节点建立连接
+     */
+    public static void connect(List<NetworkNode> networkNodes) {
+        if (networkNodes == null) {
+            return;
+        }
+        for (NetworkNode networkNode : networkNodes) {
+            poolMap.computeIfAbsent(networkNode, ConnectionManager::createPool);
+        }
+    }
+
+    /**
+     * 服务的节点列表刷新了，关闭不再属于任何服务的节点的连接池，这些节点的连接不会再重连
+     * 每次调用都会执行，所以只比较列表对象是不是同一个：注册中心监听到变化换了新的列表，或者有调用用旧的列表建立了连接池(dirty)，才逐个比较节点
+     */
+    public static void refresh(String serviceName, List<NetworkNode> networkNodes) {
+        if (networkNodes == null || (!dirty && networkNodes == serviceNodeMap.get(serviceName))) {
+            return;
+        }
+        synchronized (holder) {
+            dirty = false;
+            serviceNodeMap.put(serviceName, networkNodes);
+            Set<NetworkNode> present = new HashSet<>();
+            for (List<NetworkNode> nodes : serviceNodeMap.values()) {
+                present.addAll(nodes);
+            }
+            presentNodes = present;
+            for (NetworkNode networkNode : poolMap.keySet()) {
+                if (present.contains(networkNode)) {
+                    continue;
+                }
+                NodeConnectionPool pool = poolMap.remove(networkNode);
+                if (pool != null) {
+                    pool.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 创建节点的连接池
+     */
+    private static NodeConnectionPool createPool(NetworkNode networkNode) {
+        ConnectionInfo connectionInfo = InitClientConfiguration.getConnectionInfo();
+        return new NodeConnectionPool(networkNode, ClientRuntime.getEventLoopGroup(),
+                connectionInfo, InitClientConfiguration.getTransportInfo());
+    }
+
+    /**
+     * 关闭所有连接
+     */
+    public static void closeAll() {
+        serviceNodeMap.clear();
+        presentNodes = null;
+        for (NetworkNode networkNode : poolMap.keySet()) {
+            NodeConnectionPool pool = poolMap.remove(networkNode);
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+}
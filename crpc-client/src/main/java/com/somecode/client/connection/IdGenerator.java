@@ -1,45 +1,35 @@
 package com.somecode.client.connection;
 
-import cn.hutool.core.util.ByteUtil;
-
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 字节Id解释和生成器
+ * 请求Id生成器
+ * Id由帧编解码器直接读写，不再需要转换成byte数组
  */
 public class IdGenerator {
 
     /**
      * Id
      */
-    private AtomicInteger sessionId = new AtomicInteger(0);
+    private AtomicLong sessionId = new AtomicLong(0);
 
     /**
-     * 最大值
+     * 最大值，旧协议的帧头中Id只有4字节
      */
-    private final int max = Integer.MAX_VALUE;
+    private final long max;
 
-    // 获取数字Id
-    public Integer createSessionID() {
-        if (sessionId.get() == max) {
-            sessionId.compareAndSet(max, 0);
-        }
-        return sessionId.getAndIncrement();
+    public IdGenerator() {
+        this(false);
     }
 
-    /**
-     * 根据int类型的数字获取一个长度为4的byte数组
-     */
-    public byte[] intToBytes(Integer num) {
-        return ByteUtil.intToBytes(num);
+    public IdGenerator(boolean legacy) {
+        this.max = legacy ? Integer.MAX_VALUE : Long.MAX_VALUE;
     }
 
-    // 传入一个长度4的byte数组，转换成int类型数字
-    public Integer bytesToInt(byte[] bytes) {
-        if(bytes.length != 4) {
-            throw new IllegalArgumentException("字节数组长度必须为4才能进行转换！");
-        }
-        return ByteUtil.bytesToInt(bytes);
+    // 获取数字Id
+    // 溢出后回到0，只保留非负数
+    public long createSessionID() {
+        return sessionId.getAndIncrement() & max;
     }
 
 }
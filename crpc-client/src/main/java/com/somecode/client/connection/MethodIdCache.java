@@ -0,0 +1,76 @@
+package com.somecode.client.connection;
+
+import com.somecode.common.stub.MethodDescriptor;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端分配的方法id的缓存
+ * id由服务端进程在第一次按名字调用时分配，进程内所有连接共用，进程退出前不会改变；
+ * 一个连接只对应一个服务端进程，所以缓存保存在通道的属性中，断线重连后是新的通道，可能连到重启后的进程，重新按名字调用再获取
+ */
+public class MethodIdCache {
+
+    /**
+     * 通道属性：类的标注名 -> 接口方法 -> 方法id
+     * 接口方法按方法名和参数类型比较，动态代理和生成的存根调用同一个方法时共用一个id
+     */
+    private static final AttributeKey<ConcurrentHashMap<String, ConcurrentHashMap<MethodDescriptor, Integer>>>
+            METHOD_IDS = AttributeKey.valueOf("crpc.methodIds");
+
+    /**
+     * 不允许创建对象
+     */
+    private MethodIdCache() {
+    }
+
+    /**
+     * 获取方法在该连接上的id，没有分配过返回0
+     */
+    public static int get(Channel channel, String className, MethodDescriptor method) {
+        ConcurrentHashMap<String, ConcurrentHashMap<MethodDescriptor, Integer>> classes = channel.attr(METHOD_IDS).get();
+        if (classes == null) {
+            return 0;
+        }
+        ConcurrentHashMap<MethodDescriptor, Integer> methods = classes.get(className);
+        if (methods == null) {
+            return 0;
+        }
+        Integer methodId = methods.get(method);
+        return methodId == null ? 0 : methodId;
+    }
+
+    /**
+     * 记录服务端分配的方法id
+     */
+    public static void put(Channel channel, String className, MethodDescriptor method, int methodId) {
+        Attribute<ConcurrentHashMap<String, ConcurrentHashMap<MethodDescriptor, Integer>>> attribute =
+                channel.attr(METHOD_IDS);
+        ConcurrentHashMap<String, ConcurrentHashMap<MethodDescriptor, Integer>> classes = attribute.get();
+        if (classes == null) {
+            attribute.setIfAbsent(new ConcurrentHashMap<>());
+            classes = attribute.get();
+        }
+        classes.computeIfAbsent(className, key -> new ConcurrentHashMap<>()).put(method, methodId);
+    }
+
+    /**
+     * 移除服务端不认识的方法id
+     * 直连时不会发生，连接经过TCP代理、被转发到另一个服务端进程时才可能出现
+     * 只有缓存中还是这个id时才移除，不会误删已经重新协商到的id
+     */
+    public static void remove(Channel channel, String className, MethodDescriptor method, int methodId) {
+        ConcurrentHashMap<String, ConcurrentHashMap<MethodDescriptor, Integer>> classes = channel.attr(METHOD_IDS).get();
+        if (classes == null) {
+            return;
+        }
+        ConcurrentHashMap<MethodDescriptor, Integer> methods = classes.get(className);
+        if (methods != null) {
+            methods.remove(method, methodId);
+        }
+    }
+
+}
@@ -1,22 +1,25 @@
 package com.somecode.client.connection;
 
-import com.somecode.common.util.IdUtil;
+import com.somecode.client.configure.ConnectionInfo;
+import com.somecode.common.codec.FrameDecoder;
+import com.somecode.common.codec.FrameEncoder;
+import com.somecode.common.codec.MessageFrame;
+import com.somecode.common.codec.Protocol;
+import com.somecode.common.transport.Transport;
+import com.somecode.common.transport.TransportInfo;
 import com.somecode.common.util.StringUtils;
+import com.somecode.core.compressAlgorithm.Configuration;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.bytes.ByteArrayDecoder;
-import io.netty.handler.codec.bytes.ByteArrayEncoder;
-import org.apache.zookeeper.data.Id;
 
-import java.util.Objects;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 使用netty与服务端建立连接，并传送信息
+ * 一个NettyClient对应一个多路复用的连接，断开后按照退避间隔自动重连
  */
 public class NettyClient {
 
@@ -24,102 +27,234 @@ public class NettyClient {
 
     private Integer port;
 
-    // 会话超时时间
-    private Integer timeout;
+    // 帧编码器，没有状态，所有连接共用
+    private static final FrameEncoder FRAME_ENCODER = new FrameEncoder();
 
     // 通道
-    private Channel channel;
+    private volatile Channel channel;
+
+    // 正在进行的连接
+    private volatile ChannelFuture connectFuture;
+
+    // 下一次重连的间隔
+    private int reconnectDelay;
+
+    // 是否已经关闭，关闭后不再重连
+    private volatile boolean closed = false;
+
+    // 上一次连接是否失败，只在状态变化时打印，重连失败不会每次都打印
+    private boolean failing = false;
+
+    // 连接配置
+    private final ConnectionInfo connectionInfo;
+
+    // 启动对象，重连时复用
+    private final Bootstrap bootstrap;
+
+    // 是否使用旧协议
+    private final boolean legacy;
 
     // Id包装器，没有做成工具类，是因为想最大程度地减少出现相同相同id的可能性
-    private IdGenerator idGenerator = new IdGenerator();
+    private final IdGenerator idGenerator;
 
     /**
      * 通道处理器
      */
-    private NettyClientHandler nettyClientHandler = new NettyClientHandler(idGenerator);
+    private NettyClientHandler nettyClientHandler = new NettyClientHandler();
 
-    public NettyClient(String ip, Integer port, Integer timeout) {
+    public NettyClient(String ip, Integer port, EventLoopGroup group, ConnectionInfo connectionInfo, TransportInfo transportInfo) {
+        if (StringUtils.isEmpty(ip) || port == null) {
+            throw new IllegalArgumentException("未输入IP与端口，无法对Netty连接进行初始化操作！");
+        }
         this.ip = ip;
         this.port = port;
-        this.timeout = timeout;
-        initChannel();
+        this.connectionInfo = connectionInfo;
+        this.reconnectDelay = connectionInfo.getReconnectInitialDelay();
+        this.legacy = Transport.useLegacyProtocol(transportInfo);
+        this.idGenerator = new IdGenerator(legacy);
+        this.bootstrap = initBootstrap(group, transportInfo);
     }
 
     /**
-     * 初始化通道
+     * 初始化启动对象
      */
-    private void initChannel() {
-        if (StringUtils.isEmpty(ip) || port == null) {
-            throw new IllegalArgumentException("未输入IP与端口，无法对Netty连接进行初始化操作！");
-        }
-        // 客户端需要一个事件循环组
-        EventLoopGroup group = new NioEventLoopGroup();
-        try {
-            // 创建客户端启动对象
-            // 注意客户端使用的不是ServerBootstrap而是Bootstrap
-            Bootstrap bootstrap = new Bootstrap();
-            // 设置相关参数
-            bootstrap.group(group) // 设置线程组
-                    .channel(NioSocketChannel.class) // 使用NioSocketChannel作为客户端的通道实现
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            //加入处理器
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
-                            pipeline.addLast("frameEncoder", new LengthFieldPrepender(4));
-                            pipeline.addLast("decoder", new ByteArrayDecoder());
-                            pipeline.addLast("encoder", new ByteArrayEncoder());
-                            pipeline.addLast(nettyClientHandler);
+    private Bootstrap initBootstrap(EventLoopGroup group, TransportInfo transportInfo) {
+        // 创建客户端启动对象
+        // 注意客户端使用的不是ServerBootstrap而是Bootstrap
+        Bootstrap bootstrap = new Bootstrap();
+        // 连接级别压缩解压后的最大长度
+        int maxUncompressSize = Configuration.getMaxUncompressSize();
+        // 设置相关参数
+        bootstrap.group(group) // 设置线程组
+                .channel(Transport.socketChannelClass(transportInfo)) // 与事件循环组一致，使用EpollSocketChannel或者NioSocketChannel
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionInfo.getConnectTimeout())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        //加入处理器
+                        ChannelPipeline pipeline = ch.pipeline();
+                        // 连接级别的压缩在帧编解码器之前
+                        Transport.addCompression(pipeline, transportInfo, maxUncompressSize);
+                        if (legacy) {
+                            // 编码器按照通道属性写出旧协议的帧头
+                            ch.attr(Protocol.LEGACY).set(Boolean.TRUE);
                         }
-                    });
-            // 启动客户端去连接服务器端
-            channel = bootstrap.connect(ip, port).sync().channel();
-        } catch (Exception e) {
-            e.printStackTrace();
+                        pipeline.addLast("frameDecoder", new FrameDecoder(transportInfo.getMaxFrameLength(), Protocol.RESPONSE));
+                        pipeline.addLast("frameEncoder", FRAME_ENCODER);
+                        pipeline.addLast(nettyClientHandler);
+                    }
+                });
+        // TCP_NODELAY、缓冲区、写水位等参数
+        Transport.applyClientOptions(bootstrap, transportInfo);
+        return bootstrap;
+    }
+
+    /**
+     * 发起连接，不阻塞调用线程
+     * 连接失败或者连接断开后，按照退避间隔自动重连
+     */
+    public synchronized ChannelFuture connect() {
+        if (closed) {
+            return connectFuture;
         }
+        if (connectFuture != null && !connectFuture.isDone()) {
+            return connectFuture;
+        }
+        // 启动客户端去连接服务器端
+        ChannelFuture future = bootstrap.connect(ip, port);
+        connectFuture = future;
+        future.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                channel = f.channel();
+                synchronized (NettyClient.this) {
+                    reconnectDelay = connectionInfo.getReconnectInitialDelay();
+                    if (failing) {
+                        failing = false;
+                        System.out.println(ip + ":" + port + "连接恢复");
+                    }
+                }
+                // 连接断开就重连
+                f.channel().closeFuture().addListener(closeFuture -> scheduleReconnect(f.channel().eventLoop()));
+            } else {
+                synchronized (NettyClient.this) {
+                    if (!failing) {
+                        failing = true;
+                        System.out.println(ip + ":" + port + "连接失败，后台继续重连：" + f.cause());
+                    }
+                }
+                scheduleReconnect(f.channel().eventLoop());
+            }
+        });
+        return future;
     }
 
     /**
-     * 发送数据包
-     * 返回获取数据包的钥匙
+     * 按照退避间隔安排下一次重连，每次失败间隔翻倍，直到最大间隔
      */
-    public Integer sendMsg(byte[] msg) throws Exception {
-        // 可以发送就直接发送
-        if (channel != null) {
-            // 加工一层
-            Integer id = idGenerator.createSessionID();
-            // 转成byte数组
-            byte[] idBytes = idGenerator.intToBytes(id);
-            // 将idBytes与msg拼接在一起
-            byte[] merge = merge(idBytes, msg);
-            // 先告诉Handler建立锁
-            nettyClientHandler.setData(id);
-            // 写入
-            channel.writeAndFlush(merge).sync();
-            // 返回id，用来异步查找返回的数据包
-            return id;
-        } else {
-            throw new RuntimeException("未建立连接！");
+    private void scheduleReconnect(EventLoop eventLoop) {
+        if (closed) {
+            return;
+        }
+        int delay;
+        synchronized (this) {
+            delay = reconnectDelay;
+            reconnectDelay = Math.min(reconnectDelay * 2, connectionInfo.getReconnectMaxDelay());
+        }
+        eventLoop.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 连接是否可用
+     */
+    public boolean isActive() {
+        Channel ch = channel;
+        return ch != null && ch.isActive();
+    }
+
+    /**
+     * 是否使用旧协议，旧协议的返回是执行结果本身
+     */
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    /**
+     * 当前可用的通道，没有连接或者正在重连时返回null
+     */
+    public Channel activeChannel() {
+        Channel ch = channel;
+        return ch != null && ch.isActive() ? ch : null;
+    }
+
+    /**
+     * 关闭连接，不再重连
+     */
+    public void close() {
+        closed = true;
+        Channel ch = channel;
+        if (ch != null) {
+            ch.close();
         }
     }
 
     /**
-     * 获取返回的数据包
-     * 返回null说明失败了
+     * 发送一帧，请求Id在这里分配，帧中原有的Id不使用
+     * 不阻塞调用线程，返回的future在读取到对应的帧后完成，超时或者发送失败则以异常结束
+     * 返回的帧中的数据包是接收缓冲区的切片，使用方负责release
      */
-    public byte[] getMsg(Integer id) throws Exception {
-        return nettyClientHandler.getData(id, timeout);
+    public CompletableFuture<MessageFrame> sendMsg(MessageFrame request, int timeout) {
+        return sendMsg(null, request, timeout);
+    }
+
+    /**
+     * 在指定的通道上发送一帧，数据包中用到了只在该通道上有效的内容（比如方法id）时使用
+     * 通道为null时与sendMsg(request, timeout)一致，使用当前的通道或者等待连接完成
+     */
+    public CompletableFuture<MessageFrame> sendMsg(Channel expected, MessageFrame request, int timeout) {
+        long id = idGenerator.createSessionID();
+        // 换上分配的Id，数据包的所有权交给新的帧，写出后由编码器release
+        MessageFrame frame = request.withId(id);
+        // 先告诉Handler登记请求，超时由时间轮处理
+        CompletableFuture<MessageFrame> future = nettyClientHandler.setData(id, timeout);
+        if (expected != null) {
+            // 通道已经断开时写入失败，由写入的监听器结束请求
+            write(expected, frame);
+            return future;
+        }
+        Channel ch = channel;
+        if (ch != null && ch.isActive()) {
+            // 可以发送就直接发送
+            write(ch, frame);
+        } else {
+            ChannelFuture connecting = connectFuture;
+            if (connecting != null && !connecting.isDone()) {
+                // 正在连接，连接成功后再发送
+                connecting.addListener((ChannelFutureListener) f -> {
+                    if (f.isSuccess()) {
+                        write(f.channel(), frame);
+                    } else {
+                        frame.release();
+                        nettyClientHandler.failData(id, f.cause());
+                    }
+                });
+            } else {
+                frame.release();
+                nettyClientHandler.failData(id, new IOException(ip + ":" + port + "未建立连接！"));
+            }
+        }
+        return future;
     }
 
     /**
-     * 加工
+     * 写入，不再同步等待写入完成
      */
-    private byte[] merge(byte[] idBytes, byte[] msg) throws Exception {
-        byte[] newBytes = new byte[idBytes.length + msg.length];
-        System.arraycopy(idBytes, 0, newBytes, 0, idBytes.length);
-        System.arraycopy(msg, 0, newBytes, idBytes.length, msg.length);
-        return newBytes;
+    private void write(Channel ch, MessageFrame frame) {
+        long id = frame.getId();
+        ch.writeAndFlush(frame).addListener((ChannelFutureListener) writeFuture -> {
+            if (!writeFuture.isSuccess()) {
+                nettyClientHandler.failData(id, writeFuture.cause());
+            }
+        });
     }
 
 }
@@ -1,37 +1,28 @@
 package com.somecode.client.connection;
 
+import com.somecode.client.runtime.ClientRuntime;
+import com.somecode.common.codec.MessageFrame;
+import com.somecode.common.codec.Protocol;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.collection.LongObjectHashMap;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+@ChannelHandler.Sharable
 public class NettyClientHandler extends ChannelInboundHandlerAdapter {
 
     /**
-     * byte数组中id的长度
+     * 等待返回的请求，键为long类型的请求Id，避免装箱和拼接字符串
+     * LongObjectHashMap不是线程安全的，读写都需要对它加锁
      */
-    private static final Integer ID_LENGTH = 4;
+    private final LongObjectHashMap<PendingRequest> pendingMap = new LongObjectHashMap<>();
 
-    /**
-     * 收集返回的数据包
-     */
-    private ConcurrentHashMap<String, byte[]> responseMap = new ConcurrentHashMap<>();
-
-    /**
-     * 用来阻塞线程到设置的timeout
-     */
-    private ConcurrentHashMap<String, CountDownLatch> countMap = new ConcurrentHashMap<>();
-
-    /**
-     * 用来解析byte数组中的Id
-     */
-    IdGenerator idGenerator = null;
-
-    public NettyClientHandler(IdGenerator idGenerator) {
-        this.idGenerator = idGenerator;
-    }
 
     /**
      * 当客户端连接服务器完成就会触发该方法
@@ -42,23 +33,47 @@ public class NettyClientHandler extends ChannelInboundHandlerAdapter {
         System.out.println(ctx.name() + "与服务器连接成功！");
     }
 
+    /**
+     * 连接断开，所有还在等待的请求都不会再有返回了，直接失败
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        List<PendingRequest> pendingRequests;
+        synchronized (pendingMap) {
+            pendingRequests = new ArrayList<>(pendingMap.values());
+            pendingMap.clear();
+        }
+        IOException cause = new IOException(ctx.channel().remoteAddress() + "连接已断开！");
+        for (PendingRequest pendingRequest : pendingRequests) {
+            pendingRequest.fail(cause);
+        }
+        super.channelInactive(ctx);
+    }
+
     /**
      * 当通道有读取事件时会触发，即服务端发送数据给客户端
      */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        System.out.println("触发事件，客户端返回了信息");
-        // 读取数据并放入到map中
-        byte[] all = (byte[]) msg;
-        byte[][] bytes = takeApart(ID_LENGTH, all);
-        // 解锁id
-        Integer id = idGenerator.bytesToInt(bytes[0]);
-        // 放入map
-        responseMap.put(id + "", bytes[1]);
-        // 释放注释
-        countMap.get(id + "").countDown();
-        // 移除
-        countMap.remove(id + "");
+        // 解码器已经原地读出了帧头，数据包是接收缓冲区的切片
+        MessageFrame frame = (MessageFrame) msg;
+        if (frame.getType() == Protocol.HEARTBEAT) {
+            // 心跳的回复不对应任何请求
+            frame.release();
+            return;
+        }
+        long id = frame.getId();
+        // 取出等待的请求，已经超时的请求会被移除，迟到的数据包直接丢弃
+        PendingRequest pendingRequest;
+        synchronized (pendingMap) {
+            pendingRequest = pendingMap.remove(id);
+        }
+        if (pendingRequest != null) {
+            // 数据包不复制，整个帧直接交给等待的请求，由它负责release
+            pendingRequest.complete(frame);
+        } else {
+            frame.release();
+        }
     }
 
     /**
@@ -79,56 +94,41 @@ public class NettyClientHandler extends ChannelInboundHandlerAdapter {
     }
 
     /**
-     * 放入数据包需要在这里放入一个CountDownLatch，用来做后续的session超时设置
+     * 发送数据包之前需要在这里登记请求，并在时间轮中设置超时
      */
-    public void setData(Integer id) {
-        CountDownLatch countDownLatch = new CountDownLatch(1);
-        countMap.put(id + "", countDownLatch);
+    public CompletableFuture<MessageFrame> setData(long id, int timeout) {
+        PendingRequest pendingRequest = new PendingRequest(id, timeout, this);
+        synchronized (pendingMap) {
+            pendingMap.put(id, pendingRequest);
+        }
+        pendingRequest.setTimeout(ClientRuntime.getTimer().newTimeout(pendingRequest, timeout, TimeUnit.MILLISECONDS));
+        return pendingRequest.getFuture();
     }
 
     /**
-     * 获取返回的数据包
-     * 需要靠解析byte数组来放入
+     * 请求发送失败，移除登记的请求并以异常结束
      */
-    public byte[] getData(Integer id, Integer timeout) throws Exception {
-        byte[] bytes = responseMap.get(id + "");
-        if (bytes == null || bytes.length == 0) {
-            // 拿不到
-            // 阻塞超时时间
-            CountDownLatch count = countMap.get(id + "");
-            if (count == null) {
-                // 只会在read结束后释放，所以此时肯定是有了
-                return responseMap.get(id + "");
-            }
-            // 如果不等于null，就算此时被删除了也没有任何关系
-            // 毫秒，等待时间到了自动执行下去，或者已经读取了数据自动释放
-            count.await(timeout, TimeUnit.MILLISECONDS);
-            // 再一次获取
-            bytes = responseMap.get(id + "");
+    public void failData(long id, Throwable cause) {
+        PendingRequest pendingRequest;
+        synchronized (pendingMap) {
+            pendingRequest = pendingMap.remove(id);
         }
-        if (bytes == null || bytes.length == 0) {
-            // 拿不到，重新发送等等方式，都需要删除
-            responseMap.remove(id + "");
-            return null;
+        if (pendingRequest != null) {
+            pendingRequest.fail(cause);
         }
-        // 返回
-        // 拿到了也需要删除
-        responseMap.remove(id + "");
-        return bytes;
     }
 
     /**
-     * 拆解
+     * 只有等待表中还是同一个请求时才移除，防止Id循环使用后误删新的请求
      */
-    private byte[][] takeApart(Integer idBytesLength, byte[] all) {
-        byte[][] bytes = new byte[2][];
-        bytes[0] = new byte[idBytesLength];
-        bytes[1] = new byte[all.length - idBytesLength];
-        // 将all的0-idLength复制到bytes[0]
-        System.arraycopy(all, 0, bytes[0], 0, bytes[0].length);
-        // 将all的idLength-all.length复制到bytes[1]
-        System.arraycopy(all, bytes[0].length, bytes[1], 0, bytes[1].length);
-        return bytes;
+    boolean remove(long id, PendingRequest pendingRequest) {
+        synchronized (pendingMap) {
+            if (pendingMap.get(id) != pendingRequest) {
+                return false;
+            }
+            pendingMap.remove(id);
+            return true;
+        }
     }
 
 }
@@ -0,0 +1,70 @@
+package com.somecode.client.connection;
+
+import com.somecode.client.configure.ConnectionInfo;
+import com.somecode.common.entity.NetworkNode;
+import com.somecode.common.transport.TransportInfo;
+import io.netty.channel.EventLoopGroup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个服务节点的连接池
+ * 持有固定数量的多路复用连接，轮询使用其中可用的连接
+ */
+public class NodeConnectionPool {
+
+    /**
+     * 对应的服务节点
+     */
+    private final NetworkNode networkNode;
+
+    /**
+     * 该节点的所有连接
+     */
+    private final NettyClient[] nettyClients;
+
+    /**
+     * 轮询下标
+     */
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    public NodeConnectionPool(NetworkNode networkNode, EventLoopGroup group,
+                              ConnectionInfo connectionInfo, TransportInfo transportInfo) {
+        this.networkNode = networkNode;
+        this.nettyClients = new NettyClient[connectionInfo.getChannelsPerNode()];
+        for (int i = 0; i < nettyClients.length; i++) {
+            nettyClients[i] = new NettyClient(networkNode.getHost(), networkNode.getPort(), group, connectionInfo, transportInfo);
+            nettyClients[i].connect();
+        }
+    }
+
+    /**
+     * 选出一个连接
+     * 优先选择可用的连接，都不可用时返回轮询到的那个，由它决定等待连接还是直接失败
+     */
+    public NettyClient select() {
+        int length = nettyClients.length;
+        int start = index.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            NettyClient nettyClient = nettyClients[(start + i) % length];
+            if (nettyClient.isActive()) {
+                return nettyClient;
+            }
+        }
+        return nettyClients[start % length];
+    }
+
+    /**
+     * 关闭该节点的所有连接
+     */
+    public void close() {
+        for (NettyClient nettyClient : nettyClients) {
+            nettyClient.close();
+        }
+    }
+
+    public NetworkNode getNetworkNode() {
+        return networkNode;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.somecode.client.connection;
+
+import com.somecode.common.codec.MessageFrame;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 等待返回的请求
+ * 一个请求只对应一个对象，超时任务也是它自己，不需要额外创建lambda
+ */
+public class PendingRequest implements TimerTask {
+
+    /**
+     * 请求Id
+     */
+    private final long id;
+
+    /**
+     * 超时时间，单位ms
+     */
+    private final int timeoutMillis;
+
+    /**
+     * 所属连接的处理器，超时的时候从它的等待表中移除
+     */
+    private final NettyClientHandler handler;
+
+    /**
+     * 返回的帧完成这个future
+     */
+    private final CompletableFuture<MessageFrame> future = new CompletableFuture<>();
+
+    /**
+     * 时间轮中的超时任务
+     */
+    private volatile Timeout timeout;
+
+    public PendingRequest(long id, int timeoutMillis, NettyClientHandler handler) {
+        this.id = id;
+        this.timeoutMillis = timeoutMillis;
+        this.handler = handler;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public CompletableFuture<MessageFrame> getFuture() {
+        return future;
+    }
+
+    void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 收到返回的帧，帧交给future的使用方release
+     * future已经结束（例如被取消）时没有人会再使用它，直接release
+     */
+    void complete(MessageFrame frame) {
+        cancelTimeout();
+        if (!future.complete(frame)) {
+            frame.release();
+        }
+    }
+
+    /**
+     * 请求失败
+     */
+    void fail(Throwable cause) {
+        cancelTimeout();
+        future.completeExceptionally(cause);
+    }
+
+    /**
+     * 时间轮到期，只有还在等待表里的请求才算超时，已经返回的请求会被跳过
+     */
+    @Override
+    public void run(Timeout timeout) {
+        if (handler.remove(id, this)) {
+            future.completeExceptionally(new TimeoutException("请求" + id + "超过" + timeoutMillis + "ms未返回！"));
+        }
+    }
+
+    private void cancelTimeout() {
+        Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+}
@@ -1,26 +1,41 @@
 package com.somecode.client.proxy;
 
+import com.somecode.client.configure.InitClientConfiguration;
 import com.somecode.client.configure.InitFromConfigureFile;
+import com.somecode.client.connection.ConnectionManager;
 import com.somecode.client.connection.NettyClient;
+import com.somecode.common.codec.Codecs;
+import com.somecode.common.codec.MessageFrame;
+import com.somecode.common.codec.PayloadCodec;
+import com.somecode.common.codec.Protocol;
 import com.somecode.common.entity.NetworkNode;
 import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.entity.ResponseMessage;
 import com.somecode.common.entity.ServiceInfo;
 import com.somecode.common.entity.StrategyGroup;
+import com.somecode.common.exception.RpcException;
 import com.somecode.common.spi.core.CompressAlgorithm;
 import com.somecode.common.spi.core.LoadBalance;
 import com.somecode.common.spi.core.RegisterCenter;
 import com.somecode.common.spi.core.Serialize;
 import com.somecode.common.spi.extension.ExtensionLoader;
-import com.somecode.common.util.IdUtil;
-import com.sun.security.ntlm.Client;
+import com.somecode.common.stub.MethodDescriptor;
+import com.somecode.common.stub.ServiceDispatcher;
+import com.somecode.common.transport.Transport;
+import com.somecode.core.compressAlgorithm.Configuration;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 代理处理器
@@ -55,6 +70,11 @@ public class ClientProxyHandler<T> implements InvocationHandler {
      */
     private CompressAlgorithm compressAlgorithm;
 
+    /**
+     * 小于这个长度的数据包不压缩
+     */
+    private int minCompressSize;
+
     /**
      * 注册中心策略
      */
@@ -71,9 +91,9 @@ public class ClientProxyHandler<T> implements InvocationHandler {
     private ServiceInfo serviceInfo;
 
     /**
-     * 连接
+     * 方法的调用模板
      */
-    private NettyClient nettyClient = null;
+    private final ConcurrentHashMap<Method, MethodTemplate> templates = new ConcurrentHashMap<>();
 
     /**
      * 创建的时候就传递进来服务名和类名
@@ -83,6 +103,10 @@ public class ClientProxyHandler<T> implements InvocationHandler {
         this.className = className;
         // 初始化
         initStrategy();
+        // 配置了提前建立连接
+        if (Boolean.TRUE.equals(InitClientConfiguration.getConnectionInfo().getEager())) {
+            ConnectionManager.connect(requireNetworkNodes());
+        }
     }
 
     /**
@@ -93,6 +117,19 @@ public class ClientProxyHandler<T> implements InvocationHandler {
         return Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(), classes, this);
     }
 
+    /**
+     * 使用编译时生成的分发器创建存根，存根直接实现接口，按方法下标调用，不经过动态代理
+     * 每个方法的调用模板在这里一次生成
+     */
+    public <T> T getStub(ServiceDispatcher<T> dispatcher) {
+        MethodDescriptor[] methods = dispatcher.getMethods();
+        MethodTemplate[] stubTemplates = new MethodTemplate[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            stubTemplates[i] = newTemplate(methods[i]);
+        }
+        return dispatcher.newStub((index, args) -> call(stubTemplates[index], args));
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         // 在这里，将执行
@@ -111,64 +148,183 @@ public class ClientProxyHandler<T> implements InvocationHandler {
         //    那么返回值类型需不需要考虑呢？
         //    由于需要的只是找到对应方法，返回值类型对于找到对应方法并无影响，并且可以自动拆箱和装箱，所以暂不考虑
         // 封装请求信息
-        // 类名
-        String className = this.className;
-        // 方法名
-        String methodName = method.getName();
-        // 参数实例
-        List<Object> paramObjectList;
-        if (args.length == 0) {
-            paramObjectList = null;
-        } else {
-            paramObjectList = Arrays.asList(args);
+        // 类名、方法名、参数类型等不变的部分在第一次调用时生成模板，之后只填入参数
+        return call(getTemplate(method), args);
+    }
+
+    /**
+     * 按照调用模板发送请求，动态代理和生成的存根共用
+     * 同步方法等待结果，异步方法返回future，失败时抛出RuntimeException
+     */
+    private Object call(MethodTemplate template, Object[] args) {
+        // 使用注册中心或者配置得到当前服务节点
+        List<NetworkNode> networkNodes = requireNetworkNodes();
+        // 将节点进行负载均衡获取某一个节点
+        NetworkNode networkNode = loadBalance.requireBetterNodeFromList(networkNodes);
+        // 从连接管理中获取该节点的连接，使用Netty
+        NettyClient nettyClient = ConnectionManager.getConnection(networkNode);
+        // 该连接上已经分配过方法id就只发送id，否则按名字调用，由服务端分配id
+        // 方法id按通道缓存，请求固定在这个通道上发送
+        Channel channel = nettyClient.activeChannel();
+        int methodId = template.getMethodId(channel);
+        CompletableFuture<Object> resultFuture = send(nettyClient, channel, template, args, methodId);
+        if (methodId != 0) {
+            // 服务端不认识这个id时（例如连接经过代理到了另一个服务端进程），移除后按名字重试一次
+            resultFuture = resultFuture.handle((result, cause) -> {
+                if (cause == null) {
+                    return CompletableFuture.completedFuture(result);
+                }
+                Throwable error = cause instanceof CompletionException && cause.getCause() != null
+                        ? cause.getCause() : cause;
+                if (error instanceof RpcException && ((RpcException) error).getStatus() == ResponseMessage.NOT_FOUND) {
+                    template.removeMethodId(channel, methodId);
+                    return send(nettyClient, channel, template, args, 0);
+                }
+                CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error);
+                return failed;
+            }).thenCompose(future -> future);
         }
-        // 参数类型
-        // 不能使用args去获取，因为这是已经装箱过的，应该用method去获取
-        Class<?>[] parameterTypes = method.getParameterTypes();
-        List<String> paramObjectTypeList = new ArrayList<>();
-        for (Class clazz: parameterTypes) {
-            // 获取名字存进去就好，放入一个Class去序列化太大了
-            paramObjectTypeList.add(clazz.getName());
+        // 接口声明的是异步返回值，直接返回future，由Netty的读事件去完成
+        if (template.isAsync()) {
+            return resultFuture;
         }
-        // 装载到RequestMessage上
-        RequestMessage requestMessage = new RequestMessage(className, methodName, paramObjectList, paramObjectTypeList);
-        // 根据配置的序列化策略序列化
-        byte[] bytes = serialize.serialize(requestMessage);
-        // 根据配置的压缩策略压缩
-        bytes = compressAlgorithm.compress(bytes);
-        // 使用注册中心或者配置得到当前服务节点
+        // 同步调用，等待结果
+        try {
+            return resultFuture.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(networkNode + "调用失败：" + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(networkNode + "调用被中断", e);
+        }
+    }
+
+    /**
+     * 在指定的通道上发送一次请求，methodId不为0时只发送id，否则按名字调用
+     */
+    private CompletableFuture<Object> send(NettyClient nettyClient, Channel channel, MethodTemplate template,
+                                           Object[] args, int methodId) {
+        RequestMessage requestMessage = template.newRequest(args, methodId);
+        // 旧协议没有压缩标志，数据总是压缩
+        boolean legacy = nettyClient.isLegacy();
+        // 根据配置的序列化策略和压缩策略，直接编码到池化的缓冲区
+        MessageFrame request;
+        try {
+            // 请求Id由连接在发送时分配
+            request = PayloadCodec.encodeRequest(ByteBufAllocator.DEFAULT, 0, Protocol.REQUEST, requestMessage,
+                    template.getSerialize(), template.getCompressAlgorithm(),
+                    legacy ? 0 : template.getMinCompressSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // 发送请求，不阻塞等待
+        if (legacy) {
+            return nettyClient.sendMsg(channel, request, template.getTimeout())
+                    .thenApply(response -> decodeLegacy(response, template));
+        }
+        return nettyClient.sendMsg(channel, request, template.getTimeout())
+                .thenApply(response -> decode(response, channel, template));
+    }
+
+    /**
+     * 使用注册中心或者配置得到当前服务节点
+     */
+    private List<NetworkNode> requireNetworkNodes() {
         List<NetworkNode> networkNodes = registerCenter.requireNetworkNodeList(serviceName);
-        System.out.println("-------------------");
         // 可能是没有获取到注册中心
-        System.out.println(registerCenter);
-        //
-        System.out.println(networkNodes);
-        System.out.println("-------------------");
-        if (networkNodes.isEmpty()) {
+        if (networkNodes == null || networkNodes.isEmpty()) {
             // 使用配置文件
             networkNodes = serviceInfo.getNetworkNode();
         }
-        // 将节点进行负载均衡获取某一个节点
-        NetworkNode networkNode = loadBalance.requireBetterNodeFromList(networkNodes);
-        // 使用该节点建立连接，使用Netty
-        if (nettyClient == null) {
-            nettyClient = new NettyClient(networkNode.getHost(), networkNode.getPort(), serviceInfo.getTimeout());
+        // 已经下线的节点不再保持连接
+        ConnectionManager.refresh(serviceName, networkNodes);
+        return networkNodes;
+    }
+
+    /**
+     * 获取方法的调用模板，不存在就生成
+     */
+    private MethodTemplate getTemplate(Method method) {
+        MethodTemplate template = templates.get(method);
+        if (template == null) {
+            template = templates.computeIfAbsent(method, key -> newTemplate(MethodDescriptor.of(key)));
+        }
+        return template;
+    }
+
+    /**
+     * 按照当前的策略生成调用模板
+     */
+    private MethodTemplate newTemplate(MethodDescriptor method) {
+        return new MethodTemplate(className, method, serialize, compressAlgorithm, minCompressSize,
+                serviceInfo.getTimeout());
+    }
+
+    /**
+     * 解析返回的帧，解压和反序列化直接读取接收缓冲区，用完release
+     * 按照帧头中的id选择编解码方式，服务端不支持本地的策略时会使用它自己的方式回复
+     * 服务端返回错误状态时抛出RpcException，错误无法解析时按照帧头中的状态抛出
+     */
+    private Object decode(MessageFrame response, Channel channel, MethodTemplate template) {
+        ResponseMessage responseMessage;
+        try {
+            // 服务端连错误信息都无法序列化时只写出帧头
+            if (!response.content().isReadable()) {
+                throw new IOException("数据包为空");
+            }
+            // id为0时使用本地的策略，没有固定id的扩展写0
+            Serialize serialize = response.getSerializerId() == 0
+                    ? template.getSerialize() : Codecs.getSerialize(response.getSerializerId());
+            CompressAlgorithm compressAlgorithm = response.getCompressorId() == 0
+                    ? template.getCompressAlgorithm() : Codecs.getCompressAlgorithm(response.getCompressorId());
+            if (serialize == null || compressAlgorithm == null) {
+                throw new IOException("不支持的编解码方式：序列化" + response.getSerializerId()
+                        + "，压缩" + response.getCompressorId());
+            }
+            responseMessage = (ResponseMessage) PayloadCodec.decode(response, serialize, compressAlgorithm);
+        } catch (IOException | RuntimeException e) {
+            // 数据包无法解析，帧头中的状态仍然可以说明失败原因
+            if (response.getStatus() != ResponseMessage.OK) {
+                throw new RpcException(response.getStatus(), null, "服务端返回了无法解析的错误：" + e.getMessage(), null);
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        } finally {
+            response.release();
+        }
+        // 服务端执行失败，立即抛出，不等超时
+        if (responseMessage.getStatus() != ResponseMessage.OK) {
+            throw new RpcException(responseMessage.getStatus(), responseMessage.getErrorType(),
+                    responseMessage.getErrorMessage(), responseMessage.getErrorStack());
+        }
+        // 服务端分配了方法id，之后在这个通道上只发送id
+        if (responseMessage.getMethodId() != 0 && channel != null) {
+            template.putMethodId(channel, responseMessage.getMethodId());
+        }
+        return responseMessage.getResult();
+    }
+
+    /**
+     * 解析旧协议返回的帧，旧协议的返回就是执行结果本身，没有状态，使用本地的策略解码
+     */
+    private Object decodeLegacy(MessageFrame response, MethodTemplate template) {
+        try {
+            return PayloadCodec.decode(response, template.getSerialize(), template.getCompressAlgorithm());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            response.release();
         }
-        // 获取对应数据包的钥匙
-        Integer idKey = nettyClient.sendMsg(bytes);
-        bytes = nettyClient.getMsg(idKey);
-//        if (bytes == null) {
-//            // 说明加载失败
-//            // 展示先报错，不提供重试
-//            throw new RuntimeException(networkNode + "不可用，请检查节点或传输的数据包内容等等！");
-//        }
-        // 合理的
-        // 反压缩
-        bytes = compressAlgorithm.uncompress(bytes);
-        // 反序列化
-        Object deserialize = serialize.deserialize(bytes);
-        // 完成
-        return deserialize;
     }
 
     private void initStrategy() {
@@ -177,13 +333,16 @@ public class ClientProxyHandler<T> implements InvocationHandler {
         // 获取策略组
         StrategyGroup strategyGroup = serviceInfo.getStrategyGroup();
         // 加载对应的策略实现
-        ExtensionLoader<Serialize> serializeExtensionLoader = ExtensionLoader.load(Serialize.class);
-        ExtensionLoader<CompressAlgorithm> compressAlgorithmExtensionLoader = ExtensionLoader.load(CompressAlgorithm.class);
-        ExtensionLoader<RegisterCenter> registerCenterExtensionLoader = ExtensionLoader.load(RegisterCenter.class);
-        ExtensionLoader<LoadBalance> loadBalanceExtensionLoader = ExtensionLoader.load(LoadBalance.class);
+        ExtensionLoader<Serialize> serializeExtensionLoader = ExtensionLoader.getExtensionLoader(Serialize.class);
+        ExtensionLoader<CompressAlgorithm> compressAlgorithmExtensionLoader = ExtensionLoader.getExtensionLoader(CompressAlgorithm.class);
+        ExtensionLoader<RegisterCenter> registerCenterExtensionLoader = ExtensionLoader.getExtensionLoader(RegisterCenter.class);
+        ExtensionLoader<LoadBalance> loadBalanceExtensionLoader = ExtensionLoader.getExtensionLoader(LoadBalance.class);
         // 获取对应实现
         this.serialize = serializeExtensionLoader.getExtension(strategyGroup.getSerialize());
         this.compressAlgorithm = compressAlgorithmExtensionLoader.getExtension(strategyGroup.getCompressAlgorithm());
+        // 使用连接级别的压缩时由管道中的压缩流压缩，数据包不再单独压缩
+        this.minCompressSize = Transport.useStreamCompression(InitClientConfiguration.getTransportInfo())
+                ? Integer.MAX_VALUE : Configuration.getMinCompressSize();
         this.registerCenter = registerCenterExtensionLoader.getExtension(strategyGroup.getRegisterCenter());
         this.loadBalance = loadBalanceExtensionLoader.getExtension(strategyGroup.getLoadBalance());
     }
@@ -0,0 +1,149 @@
+package com.somecode.client.proxy;
+
+import com.somecode.client.connection.MethodIdCache;
+import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.common.spi.core.Serialize;
+import com.somecode.common.stub.MethodDescriptor;
+import io.netty.channel.Channel;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个接口方法的调用模板，动态代理在第一次调用时生成，生成的存根在创建时生成，之后每次调用只需要填入参数
+ * 类名、方法名、参数类型、编解码策略、超时时间在生成时就确定下来，不再变化
+ * 方法id由服务端按连接分配，模板记住最近一次协商到的连接和id，其他连接上的id仍然从MethodIdCache中查找
+ */
+public class MethodTemplate {
+
+    /**
+     * 类的标注名
+     */
+    private final String className;
+
+    /**
+     * 对应的接口方法，参数类型的类名所有请求共用，不允许修改
+     */
+    private final MethodDescriptor method;
+
+    /**
+     * 序列化策略
+     */
+    private final Serialize serialize;
+
+    /**
+     * 压缩策略
+     */
+    private final CompressAlgorithm compressAlgorithm;
+
+    /**
+     * 小于这个长度的数据包不压缩
+     */
+    private final int minCompressSize;
+
+    /**
+     * 超时时间
+     */
+    private final int timeout;
+
+    /**
+     * 最近一次协商到的方法id
+     */
+    private volatile NegotiatedId negotiatedId;
+
+    public MethodTemplate(String className, MethodDescriptor method, Serialize serialize,
+                          CompressAlgorithm compressAlgorithm, int minCompressSize, int timeout) {
+        this.className = className;
+        this.method = method;
+        this.serialize = serialize;
+        this.compressAlgorithm = compressAlgorithm;
+        this.minCompressSize = minCompressSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 填入参数生成请求，methodId不为0时只发送id
+     */
+    public RequestMessage newRequest(Object[] args, int methodId) {
+        List<Object> paramObjectList = args == null || args.length == 0 ? null : Arrays.asList(args);
+        if (methodId != 0) {
+            return new RequestMessage(null, null, paramObjectList, null, methodId);
+        }
+        return new RequestMessage(className, method.getName(), paramObjectList, method.getParamTypeNames(), 0);
+    }
+
+    /**
+     * 获取方法在该连接上的id，没有分配过返回0
+     */
+    public int getMethodId(Channel channel) {
+        if (channel == null) {
+            return 0;
+        }
+        NegotiatedId negotiated = this.negotiatedId;
+        if (negotiated != null && negotiated.channel == channel) {
+            return negotiated.methodId;
+        }
+        return MethodIdCache.get(channel, className, method);
+    }
+
+    /**
+     * 记录服务端在该连接上分配的方法id
+     */
+    public void putMethodId(Channel channel, int methodId) {
+        MethodIdCache.put(channel, className, method, methodId);
+        this.negotiatedId = new NegotiatedId(channel, methodId);
+    }
+
+    /**
+     * 服务端不认识这个id时移除，之后在该连接上重新按名字调用
+     */
+    public void removeMethodId(Channel channel, int methodId) {
+        MethodIdCache.remove(channel, className, method, methodId);
+        NegotiatedId negotiated = this.negotiatedId;
+        if (negotiated != null && negotiated.channel == channel && negotiated.methodId == methodId) {
+            this.negotiatedId = null;
+        }
+    }
+
+    public MethodDescriptor getMethod() {
+        return method;
+    }
+
+    public Serialize getSerialize() {
+        return serialize;
+    }
+
+    public CompressAlgorithm getCompressAlgorithm() {
+        return compressAlgorithm;
+    }
+
+    public int getMinCompressSize() {
+        return minCompressSize;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public boolean isAsync() {
+        return method.isAsync();
+    }
+
+    /**
+     * 连接和在该连接上分配的方法id，一起替换，读取时不会看到不匹配的一对
+     */
+    private static class NegotiatedId {
+
+        private final Channel channel;
+
+        private final int methodId;
+
+        private NegotiatedId(Channel channel, int methodId) {
+            this.channel = channel;
+            this.methodId = methodId;
+        }
+
+    }
+
+}
@@ -1,15 +1,22 @@
 package com.somecode.client.proxy;
 
-import java.lang.reflect.Proxy;
+import com.somecode.client.runtime.ClientRuntime;
 
 /**
  * 代理工厂，用来代理接口
+ * 代理对象由ClientRuntime缓存，同一个接口同一个服务同一个类重复创建拿到的是同一个代理
  */
 public class ProxyFactory {
 
     public static <T> T  create(Class<?> type, String serviceName,String className) {
-        ClientProxyHandler<T> clientProxyHandler = new ClientProxyHandler(serviceName, className);
-        return (T) clientProxyHandler.getProxy(new Class<?>[]{type});
+        return ClientRuntime.getProxy(type, serviceName, className);
+    }
+
+    /**
+     * 关闭客户端，断开所有连接
+     */
+    public static void shutdown() {
+        ClientRuntime.shutdown();
     }
 
 }
@@ -0,0 +1,133 @@
+package com.somecode.client.runtime;
+
+import com.somecode.client.configure.InitClientConfiguration;
+import com.somecode.client.connection.ConnectionManager;
+import com.somecode.client.proxy.ClientProxyHandler;
+import com.somecode.common.stub.ServiceDispatcher;
+import com.somecode.common.stub.ServiceDispatchers;
+import com.somecode.common.transport.Transport;
+import com.somecode.common.util.Holder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端运行时，整个进程共用一个
+ * 持有唯一的事件循环组，缓存代理对象与代理处理器，所有代理共用ConnectionManager中的连接
+ */
+public class ClientRuntime {
+
+    /**
+     * 事件循环组
+     */
+    private static volatile EventLoopGroup eventLoopGroup = null;
+
+    /**
+     * 所有连接共用的时间轮，用来处理请求超时
+     * 精度10ms，超时时间本身是毫秒级配置，足够使用
+     */
+    private static volatile HashedWheelTimer timer = null;
+
+    /**
+     * 代理对象的缓存
+     * 键值对：接口全类名 + # + 服务名 + # + 类的标注名 = 代理对象
+     */
+    private static ConcurrentHashMap<String, Object> proxyMap = new ConcurrentHashMap<>();
+
+    /**
+     * 代理处理器的缓存，同一个服务同一个类只加载一次策略
+     * 键值对：服务名 + # + 类的标注名 = 代理处理器
+     */
+    private static ConcurrentHashMap<String, ClientProxyHandler> handlerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 加个锁
+     */
+    private static Holder holder = new Holder();
+
+    /**
+     * 不允许创建对象
+     */
+    private ClientRuntime() { }
+
+    /**
+     * 获取代理对象，同一个接口同一个服务同一个类只创建一次
+     * 接口标注了@CrpcService时使用编译时生成的存根，否则使用动态代理
+     */
+    public static <T> T getProxy(Class<?> type, String serviceName, String className) {
+        String key = type.getName() + "#" + serviceName + "#" + className;
+        Object proxy = proxyMap.get(key);
+        if (proxy == null) {
+            proxy = proxyMap.computeIfAbsent(key, k -> {
+                ClientProxyHandler handler = getHandler(serviceName, className);
+                ServiceDispatcher<?> dispatcher = ServiceDispatchers.get(type);
+                return dispatcher != null ? handler.getStub(dispatcher) : handler.getProxy(new Class<?>[]{type});
+            });
+        }
+        return (T) proxy;
+    }
+
+    /**
+     * 获取代理处理器
+     */
+    private static ClientProxyHandler getHandler(String serviceName, String className) {
+        return handlerMap.computeIfAbsent(serviceName + "#" + className,
+                k -> new ClientProxyHandler(serviceName, className));
+    }
+
+    /**
+     * 获取事件循环组，第一次使用时按照配置的线程数创建，可用时使用epoll
+     * 线程设置为守护线程，不会阻止进程退出
+     */
+    public static EventLoopGroup getEventLoopGroup() {
+        if (eventLoopGroup == null) {
+            synchronized (holder) {
+                if (eventLoopGroup == null) {
+                    eventLoopGroup = Transport.newEventLoopGroup(InitClientConfiguration.getTransportInfo(),
+                            InitClientConfiguration.getIoThreads(), new DefaultThreadFactory("crpc-client", true));
+                }
+            }
+        }
+        return eventLoopGroup;
+    }
+
+    /**
+     * 获取处理请求超时的时间轮，第一次使用时创建
+     */
+    public static HashedWheelTimer getTimer() {
+        if (timer == null) {
+            synchronized (holder) {
+                if (timer == null) {
+                    timer = new HashedWheelTimer(new DefaultThreadFactory("crpc-timeout", true),
+                            10, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * 关闭客户端，断开所有连接并释放事件循环组和时间轮
+     * 关闭后再次使用会重新创建
+     */
+    public static void shutdown() {
+        synchronized (holder) {
+            proxyMap.clear();
+            handlerMap.clear();
+            ConnectionManager.closeAll();
+            if (eventLoopGroup != null) {
+                eventLoopGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS).syncUninterruptibly();
+                eventLoopGroup = null;
+            }
+            if (timer != null) {
+                // 还没到期的超时任务不再执行，断开连接时等待的请求已经失败
+                timer.stop();
+                timer = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.somecode.common.codec;
+
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.common.spi.core.Serialize;
+import com.somecode.common.spi.extension.ExtensionLoader;
+import com.somecode.common.util.Holder;
+
+/**
+ * 按帧头中的id查找序列化方式和压缩算法
+ * 第一次使用时实例化全部登记的拓展，放进以id为下标的数组，之后每个请求只需要一次数组访问
+ */
+public class Codecs {
+
+    /**
+     * 数组长度，id只能是0到127
+     */
+    private static final int TABLE_SIZE = 128;
+
+    /**
+     * 序列化方式，下标就是id，0不使用
+     */
+    private static volatile Serialize[] serializeTable = null;
+
+    /**
+     * 压缩算法，下标就是id，0不使用
+     */
+    private static volatile CompressAlgorithm[] compressAlgorithmTable = null;
+
+    /**
+     * 加载拓展的锁
+     */
+    private static Holder holder = new Holder();
+
+    /**
+     * 不允许创建对象
+     */
+    private Codecs() {
+    }
+
+    /**
+     * 提前实例化全部登记的序列化方式和压缩算法，服务端启动时调用，第一个请求不需要再加载
+     */
+    public static void load() {
+        getSerializeTable();
+        getCompressAlgorithmTable();
+    }
+
+    /**
+     * 按id获取序列化方式，没有登记返回null
+     */
+    public static Serialize getSerialize(byte id) {
+        return id > 0 ? getSerializeTable()[id] : null;
+    }
+
+    /**
+     * 按id获取压缩算法，没有登记返回null
+     */
+    public static CompressAlgorithm getCompressAlgorithm(byte id) {
+        return id > 0 ? getCompressAlgorithmTable()[id] : null;
+    }
+
+    private static Serialize[] getSerializeTable() {
+        if (serializeTable == null) {
+            synchronized (holder) {
+                if (serializeTable == null) {
+                    Serialize[] table = new Serialize[TABLE_SIZE];
+                    for (Serialize serialize : ExtensionLoader.getExtensionLoader(Serialize.class).getExtensions()) {
+                        register(table, serialize.getId(), serialize);
+                    }
+                    serializeTable = table;
+                }
+            }
+        }
+        return serializeTable;
+    }
+
+    private static CompressAlgorithm[] getCompressAlgorithmTable() {
+        if (compressAlgorithmTable == null) {
+            synchronized (holder) {
+                if (compressAlgorithmTable == null) {
+                    CompressAlgorithm[] table = new CompressAlgorithm[TABLE_SIZE];
+                    for (CompressAlgorithm compressAlgorithm
+                            : ExtensionLoader.getExtensionLoader(CompressAlgorithm.class).getExtensions()) {
+                        register(table, compressAlgorithm.getId(), compressAlgorithm);
+                    }
+                    compressAlgorithmTable = table;
+                }
+            }
+        }
+        return compressAlgorithmTable;
+    }
+
+    /**
+     * 登记拓展，id为0的拓展没有固定的id，不登记，帧头中写0时由对方使用自己配置的方式
+     * id不能是负数，也不能与已经登记的拓展重复
+     */
+    private static void register(Object[] table, byte id, Object extension) {
+        if (id == 0) {
+            return;
+        }
+        if (id < 0) {
+            throw new IllegalStateException(extension.getClass().getName() + "的id" + id + "不在0到127之间！");
+        }
+        if (table[id] != null && table[id].getClass() != extension.getClass()) {
+            throw new IllegalStateException(extension.getClass().getName() + "与"
+                    + table[id].getClass().getName() + "的id重复：" + id);
+        }
+        table[id] = extension;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.somecode.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+/**
+ * 帧解码器，每个连接一个
+ * 根据连接上的前两个字节判断是新协议还是旧协议，之后这个连接一直按照同一种协议解码，并记录在通道属性中，
+ * 编码器按照同样的协议回复
+ * 直接在接收缓冲区上读取帧头，数据包是原缓冲区的切片，不会复制成byte数组
+ */
+public class FrameDecoder extends ByteToMessageDecoder {
+
+    /**
+     * 数据包的最大长度，长度来自对方，超过时直接关闭连接，不会等待和缓存这么多数据
+     */
+    private final int maxBodyLength;
+
+    /**
+     * 旧协议的帧没有消息类型，按照接收方的角色补上：服务端收到的是请求，客户端收到的是返回
+     */
+    private final byte legacyType;
+
+    /**
+     * 该连接是否使用旧协议，还没有收到数据时为null
+     */
+    private Boolean legacy;
+
+    public FrameDecoder(byte legacyType) {
+        this(Protocol.DEFAULT_MAX_FRAME_LENGTH, legacyType);
+    }
+
+    public FrameDecoder(int maxBodyLength, byte legacyType) {
+        this.maxBodyLength = maxBodyLength;
+        this.legacyType = legacyType;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (legacy == null) {
+            if (in.readableBytes() < 2) {
+                return;
+            }
+            legacy = in.getShort(in.readerIndex()) != Protocol.MAGIC;
+            if (legacy) {
+                ctx.channel().attr(Protocol.LEGACY).set(Boolean.TRUE);
+            }
+        }
+        MessageFrame frame = legacy ? decodeLegacy(in) : decodeFrame(in);
+        if (frame != null) {
+            out.add(frame);
+        }
+    }
+
+    /**
+     * 解码一帧，数据不够时返回null，等待更多数据
+     */
+    private MessageFrame decodeFrame(ByteBuf in) {
+        if (in.readableBytes() < Protocol.HEADER_LENGTH) {
+            return null;
+        }
+        int start = in.readerIndex();
+        int length = checkLength(in.getInt(start + Protocol.LENGTH_OFFSET));
+        // 相加可能溢出，所以用减法比较
+        if (length > in.readableBytes() - Protocol.HEADER_LENGTH) {
+            return null;
+        }
+        if (in.readShort() != Protocol.MAGIC) {
+            throw new CorruptedFrameException("魔数错误！");
+        }
+        byte version = in.readByte();
+        if (version > Protocol.VERSION) {
+            throw new CorruptedFrameException("不支持的协议版本：" + version);
+        }
+        byte type = in.readByte();
+        byte serializerId = in.readByte();
+        byte compressorId = in.readByte();
+        byte flags = in.readByte();
+        byte status = in.readByte();
+        long id = in.readLong();
+        in.skipBytes(4);
+        // 数据包是接收缓冲区的切片，没有复制
+        ByteBuf body = in.readRetainedSlice(length);
+        return new MessageFrame(type, serializerId, compressorId, flags, status, id, body);
+    }
+
+    /**
+     * 解码一帧旧协议的数据，旧协议的数据总是压缩过的
+     */
+    private MessageFrame decodeLegacy(ByteBuf in) {
+        if (in.readableBytes() < Protocol.LEGACY_LENGTH_FIELD_LENGTH) {
+            return null;
+        }
+        int length = checkLength(in.getInt(in.readerIndex()));
+        if (length < Protocol.LEGACY_HEADER_LENGTH) {
+            throw new CorruptedFrameException("帧长度错误：" + length);
+        }
+        if (length > in.readableBytes() - Protocol.LEGACY_LENGTH_FIELD_LENGTH) {
+            return null;
+        }
+        in.skipBytes(Protocol.LEGACY_LENGTH_FIELD_LENGTH);
+        // 旧协议的请求Id是int，按无符号数读取
+        long id = in.readInt() & 0xFFFFFFFFL;
+        ByteBuf body = in.readRetainedSlice(length - Protocol.LEGACY_HEADER_LENGTH);
+        return new MessageFrame(legacyType, (byte) 0, (byte) 0, Protocol.FLAG_COMPRESSED, (byte) 0, id, body);
+    }
+
+    private int checkLength(int length) {
+        if (length < 0) {
+            throw new CorruptedFrameException("帧长度错误：" + length);
+        }
+        if (length > maxBodyLength) {
+            throw new TooLongFrameException("帧长度" + length + "超过了" + maxBodyLength);
+        }
+        return length;
+    }
+
+}
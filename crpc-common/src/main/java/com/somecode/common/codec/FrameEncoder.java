@@ -0,0 +1,46 @@
+package com.somecode.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 帧编码器
+ * 只申请帧头大小的缓冲区写入帧头，数据包本身已经是池化的缓冲区，原样跟在后面写出
+ * 两段由传输层合并成一次gathering write，数据包不会再被复制
+ * 通道属性标记了旧协议的连接按照旧协议的格式写出，旧协议没有压缩标志，数据包必须已经压缩
+ */
+@ChannelHandler.Sharable
+public class FrameEncoder extends MessageToMessageEncoder<MessageFrame> {
+
+    /**
+     * 写入帧，msg由父类负责release，所以数据包需要retain之后再交出去
+     */
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MessageFrame msg, List<Object> out) {
+        ByteBuf body = msg.content();
+        ByteBuf header;
+        if (Boolean.TRUE.equals(ctx.channel().attr(Protocol.LEGACY).get())) {
+            header = ctx.alloc().ioBuffer(Protocol.LEGACY_LENGTH_FIELD_LENGTH + Protocol.LEGACY_HEADER_LENGTH);
+            header.writeInt(Protocol.LEGACY_HEADER_LENGTH + body.readableBytes());
+            header.writeInt((int) msg.getId());
+        } else {
+            header = ctx.alloc().ioBuffer(Protocol.HEADER_LENGTH);
+            header.writeShort(Protocol.MAGIC);
+            header.writeByte(Protocol.VERSION);
+            header.writeByte(msg.getType());
+            header.writeByte(msg.getSerializerId());
+            header.writeByte(msg.getCompressorId());
+            header.writeByte(msg.getFlags());
+            header.writeByte(msg.getStatus());
+            header.writeLong(msg.getId());
+            header.writeInt(body.readableBytes());
+        }
+        out.add(header);
+        out.add(body.retain());
+    }
+
+}
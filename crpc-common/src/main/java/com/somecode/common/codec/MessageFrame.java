@@ -0,0 +1,97 @@
+package com.somecode.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * 一帧数据：帧头中的字段 + 数据包
+ * 数据包直接引用Netty的ByteBuf，读取时是接收缓冲区的切片，不做复制
+ * 使用完毕需要release
+ */
+public class MessageFrame extends DefaultByteBufHolder {
+
+    /**
+     * 消息类型，见Protocol中的常量
+     */
+    private final byte type;
+
+    /**
+     * 序列化方式id，旧协议为0
+     */
+    private final byte serializerId;
+
+    /**
+     * 压缩算法id，旧协议为0
+     */
+    private final byte compressorId;
+
+    /**
+     * 标志
+     */
+    private final byte flags;
+
+    /**
+     * 返回的状态，请求为0
+     */
+    private final byte status;
+
+    /**
+     * 请求Id
+     */
+    private final long id;
+
+    public MessageFrame(byte type, byte serializerId, byte compressorId, byte flags, byte status, long id,
+                        ByteBuf body) {
+        super(body);
+        this.type = type;
+        this.serializerId = serializerId;
+        this.compressorId = compressorId;
+        this.flags = flags;
+        this.status = status;
+        this.id = id;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public byte getSerializerId() {
+        return serializerId;
+    }
+
+    public byte getCompressorId() {
+        return compressorId;
+    }
+
+    public byte getFlags() {
+        return flags;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 数据包是否经过压缩
+     */
+    public boolean isCompressed() {
+        return (flags & Protocol.FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * 换一个请求Id，共用同一个数据包，不增加引用计数
+     */
+    public MessageFrame withId(long id) {
+        return new MessageFrame(type, serializerId, compressorId, flags, status, id, content());
+    }
+
+    @Override
+    public MessageFrame replace(ByteBuf content) {
+        return new MessageFrame(type, serializerId, compressorId, flags, status, id, content);
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.somecode.common.codec;
+
+import com.somecode.common.entity.ResponseMessage;
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.common.spi.core.Serialize;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+
+/**
+ * 数据包的编解码工具
+ * 数据包就是序列化后（可能经过压缩）的数据，是否压缩、使用的序列化方式和压缩算法都记录在帧头中
+ * 序列化直接写入池化的缓冲区，达到阈值的再压缩到另一个池化的缓冲区，中间不产生byte数组
+ */
+public class PayloadCodec {
+
+    /**
+     * 数据包缓冲区的初始大小，不够时由缓冲区自己扩容
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 不允许创建对象
+     */
+    private PayloadCodec() {
+    }
+
+    /**
+     * 编码一个请求帧
+     */
+    public static MessageFrame encodeRequest(ByteBufAllocator alloc, long id, byte type, Object request,
+                                             Serialize serialize, CompressAlgorithm compressAlgorithm,
+                                             int minCompressSize) throws IOException {
+        return encode(alloc, id, type, (byte) 0, request, serialize, compressAlgorithm, minCompressSize);
+    }
+
+    /**
+     * 编码一个返回帧，帧头中的状态与返回的状态一致，客户端不需要反序列化就能知道调用是否成功
+     */
+    public static MessageFrame encodeResponse(ByteBufAllocator alloc, long id, ResponseMessage response,
+                                              Serialize serialize, CompressAlgorithm compressAlgorithm,
+                                              int minCompressSize) throws IOException {
+        return encode(alloc, id, Protocol.RESPONSE, (byte) response.getStatus(), response, serialize,
+                compressAlgorithm, minCompressSize);
+    }
+
+    /**
+     * 编码一个旧协议的返回帧，旧协议的返回就是执行结果本身，数据总是压缩
+     * 旧协议没有状态，执行失败时结果为null
+     */
+    public static MessageFrame encodeLegacyResponse(ByteBufAllocator alloc, long id, Object result,
+                                                    Serialize serialize, CompressAlgorithm compressAlgorithm)
+            throws IOException {
+        return encode(alloc, id, Protocol.RESPONSE, (byte) 0, result, serialize, compressAlgorithm, 0);
+    }
+
+    /**
+     * 序列化，序列化后的长度不小于minCompressSize时再压缩，写入从alloc申请的缓冲区
+     * 返回的帧写出后由编码器release
+     */
+    private static MessageFrame encode(ByteBufAllocator alloc, long id, byte type, byte status, Object object,
+                                       Serialize serialize, CompressAlgorithm compressAlgorithm,
+                                       int minCompressSize) throws IOException {
+        ByteBuf raw = alloc.buffer(INITIAL_CAPACITY);
+        try {
+            serialize.serialize(object, raw);
+            if (raw.readableBytes() < minCompressSize) {
+                // 小消息直接发送，所有权交给帧
+                MessageFrame frame = new MessageFrame(type, serialize.getId(), compressAlgorithm.getId(),
+                        (byte) 0, status, id, raw);
+                raw = null;
+                return frame;
+            }
+            ByteBuf compressed = alloc.buffer(raw.readableBytes());
+            try {
+                compressAlgorithm.compress(raw, compressed);
+                return new MessageFrame(type, serialize.getId(), compressAlgorithm.getId(),
+                        Protocol.FLAG_COMPRESSED, status, id, compressed);
+            } catch (IOException | RuntimeException e) {
+                compressed.release();
+                throw e;
+            }
+        } finally {
+            if (raw != null) {
+                raw.release();
+            }
+        }
+    }
+
+    /**
+     * 按照帧头中的标志解压并反序列化数据包，不会release
+     */
+    public static Object decode(MessageFrame frame, Serialize serialize, CompressAlgorithm compressAlgorithm)
+            throws IOException {
+        ByteBuf buf = frame.content();
+        if (!frame.isCompressed()) {
+            return serialize.deserialize(buf);
+        }
+        ByteBuf uncompressed = buf.alloc().buffer(buf.readableBytes() * 2);
+        try {
+            compressAlgorithm.uncompress(buf, uncompressed);
+            return serialize.deserialize(uncompressed);
+        } finally {
+            uncompressed.release();
+        }
+    }
+
+}
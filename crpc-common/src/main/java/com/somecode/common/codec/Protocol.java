@@ -0,0 +1,92 @@
+package com.somecode.common.codec;
+
+import io.netty.util.AttributeKey;
+
+/**
+ * 协议常量
+ * 帧格式：2字节魔数 + 1字节版本 + 1字节消息类型 + 1字节序列化方式id + 1字节压缩算法id + 1字节标志
+ *        + 1字节状态 + 8字节请求Id + 4字节数据包长度 + 数据包，帧头共20字节
+ * 旧协议的帧格式：4字节长度 + 4字节请求Id + 数据，由魔数区分，旧协议的长度不可能是负数，
+ * 而魔数的最高位是1，所以连接上的前两个字节就能判断使用的是哪种协议
+ * 旧协议的数据总是按照配置的方式序列化后再压缩，返回的数据是执行结果本身，不是ResponseMessage
+ */
+public class Protocol {
+
+    /**
+     * 魔数
+     */
+    public static final short MAGIC = (short) 0xCAFE;
+
+    /**
+     * 当前版本，收到更高版本的帧时关闭连接
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 帧头的长度
+     */
+    public static final int HEADER_LENGTH = 20;
+
+    /**
+     * 数据包的默认最大长度，8MB
+     */
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * 数据包长度字段在帧头中的位置
+     */
+    public static final int LENGTH_OFFSET = 16;
+
+    /**
+     * 旧协议长度字段的长度
+     */
+    public static final int LEGACY_LENGTH_FIELD_LENGTH = 4;
+
+    /**
+     * 旧协议长度字段之后的请求Id的长度
+     */
+    public static final int LEGACY_HEADER_LENGTH = 4;
+
+    /**
+     * 消息类型：请求
+     */
+    public static final byte REQUEST = 0;
+
+    /**
+     * 消息类型：返回
+     */
+    public static final byte RESPONSE = 1;
+
+    /**
+     * 消息类型：心跳，收到后原样回复一个心跳，没有数据包
+     */
+    public static final byte HEARTBEAT = 2;
+
+    /**
+     * 消息类型：单向请求，服务端执行后不回复
+     */
+    public static final byte ONE_WAY = 3;
+
+    /**
+     * 消息类型：流式数据块，暂不支持，服务端回复错误
+     */
+    public static final byte STREAM_CHUNK = 4;
+
+    /**
+     * 标志：数据包经过压缩
+     */
+    public static final byte FLAG_COMPRESSED = 0x01;
+
+    /**
+     * 通道属性：该连接使用旧协议
+     * 服务端由解码器根据收到的第一帧设置，客户端按照配置在建立连接时设置，编码器按照它选择帧格式
+     */
+    public static final AttributeKey<Boolean> LEGACY = AttributeKey.valueOf("crpc.legacyProtocol");
+
+    /**
+     * 不允许创建对象
+     */
+    private Protocol() {
+    }
+
+}
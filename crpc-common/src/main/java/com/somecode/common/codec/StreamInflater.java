@@ -0,0 +1,97 @@
+package com.somecode.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.compression.DecompressionException;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 连接级别压缩的解压器，每个连接一个，与JdkZlibEncoder(ZlibWrapper.NONE)写出的deflate流对应
+ * 每次最多解压出CHUNK_SIZE字节就交给帧解码器，帧解码器按照帧长度上限检查，不会先把整个数据解压到内存里
+ * 收到的一段数据解压后的总长度超过上限时直接关闭连接，压缩数据来自对方，不能信任
+ */
+public class StreamInflater extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 每次交给下一个处理器的最大长度
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 收到的一段压缩数据解压后的最大长度
+     */
+    private final int maxUncompressSize;
+
+    private final Inflater inflater = new Inflater(true);
+
+    public StreamInflater(int maxUncompressSize) {
+        this.maxUncompressSize = maxUncompressSize;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        ByteBuf in = (ByteBuf) msg;
+        byte[] input;
+        try {
+            if (!in.isReadable()) {
+                return;
+            }
+            if (inflater.finished()) {
+                throw new DecompressionException("压缩流已经结束，不能再接收数据！");
+            }
+            // Inflater引用输入数组直到needsInput，本方法返回前会全部解压完，所以复制一次即可
+            input = new byte[in.readableBytes()];
+            in.readBytes(input);
+        } finally {
+            in.release();
+        }
+        inflater.setInput(input);
+        long total = 0;
+        while (!inflater.needsInput() && !inflater.finished()) {
+            ByteBuf chunk = ctx.alloc().heapBuffer(CHUNK_SIZE);
+            int n;
+            try {
+                n = inflater.inflate(chunk.array(), chunk.arrayOffset(), CHUNK_SIZE);
+                if (n == 0 && inflater.needsDictionary()) {
+                    throw new DecompressionException("压缩流需要字典，不支持！");
+                }
+            } catch (DataFormatException e) {
+                chunk.release();
+                throw new DecompressionException("压缩流格式错误！", e);
+            } catch (RuntimeException e) {
+                chunk.release();
+                throw e;
+            }
+            total += n;
+            if (total > maxUncompressSize) {
+                chunk.release();
+                throw new DecompressionException("解压后长度超过了" + maxUncompressSize + "！");
+            }
+            if (n == 0) {
+                chunk.release();
+                continue;
+            }
+            chunk.writerIndex(n);
+            ctx.fireChannelRead(chunk);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        inflater.end();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        inflater.end();
+    }
+
+}
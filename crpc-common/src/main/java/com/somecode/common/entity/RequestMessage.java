@@ -37,4 +37,10 @@ public class RequestMessage implements Serializable {
      */
     private List<String> paramObjectTypeLit;
 
+    /**
+     * 服务端分配的方法id，只在分配它的连接上有效
+     * 不为0时服务端直接按id查找方法，类名、方法名和参数类型都不用发送
+     */
+    private int methodId;
+
 }
@@ -1,9 +1,95 @@
 package com.somecode.common.entity;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
 /**
  * 返回实体
+ * 每个请求都有返回，执行失败时带回状态和错误信息，客户端立即失败，不用等到超时
  * @author 落阳
  * @date 2023/3/3
  */
-public class ResponseMessage {
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResponseMessage implements Serializable {
+
+    /**
+     * 执行成功
+     */
+    public static final int OK = 0;
+
+    /**
+     * 实现类的方法抛出了异常
+     */
+    public static final int SERVICE_ERROR = 1;
+
+    /**
+     * 请求无法解析
+     */
+    public static final int BAD_REQUEST = 2;
+
+    /**
+     * 找不到对应的实现类或者方法，包括不存在的方法id
+     */
+    public static final int NOT_FOUND = 3;
+
+    /**
+     * 业务线程池已满，请求没有执行
+     */
+    public static final int REJECTED = 4;
+
+    /**
+     * 服务端其他错误，比如执行结果无法序列化
+     */
+    public static final int SERVER_ERROR = 5;
+
+    /**
+     * 状态
+     */
+    private int status;
+
+    /**
+     * 执行结果
+     */
+    private Object result;
+
+    /**
+     * 请求按名字查找方法时，服务端为该方法分配的id，客户端缓存后在同一个连接上使用
+     * 请求中已经带有id时为0
+     */
+    private int methodId;
+
+    /**
+     * 失败时异常的全类名
+     */
+    private String errorType;
+
+    /**
+     * 失败时的错误信息
+     */
+    private String errorMessage;
+
+    /**
+     * 失败时裁剪过的调用栈，服务端没有配置时为null
+     */
+    private String errorStack;
+
+    /**
+     * 执行成功的返回
+     */
+    public static ResponseMessage ok(Object result, int methodId) {
+        return new ResponseMessage(OK, result, methodId, null, null, null);
+    }
+
+    /**
+     * 执行失败的返回
+     */
+    public static ResponseMessage error(int status, String errorType, String errorMessage, String errorStack) {
+        return new ResponseMessage(status, null, 0, errorType, errorMessage, errorStack);
+    }
+
 }
@@ -0,0 +1,43 @@
+package com.somecode.common.exception;
+
+/**
+ * 远程调用失败，由服务端返回的错误状态生成
+ * 服务端的异常对象不会传回客户端，只带回异常的类名、信息和裁剪过的调用栈
+ */
+public class RpcException extends RuntimeException {
+
+    /**
+     * 返回的状态，见ResponseMessage中的状态常量
+     */
+    private final int status;
+
+    /**
+     * 服务端异常的全类名
+     */
+    private final String remoteType;
+
+    /**
+     * 服务端裁剪过的调用栈，服务端没有配置返回调用栈时为null
+     */
+    private final String remoteStack;
+
+    public RpcException(int status, String remoteType, String message, String remoteStack) {
+        super(remoteType == null ? message : remoteType + ": " + message);
+        this.status = status;
+        this.remoteType = remoteType;
+        this.remoteStack = remoteStack;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getRemoteType() {
+        return remoteType;
+    }
+
+    public String getRemoteStack() {
+        return remoteStack;
+    }
+
+}
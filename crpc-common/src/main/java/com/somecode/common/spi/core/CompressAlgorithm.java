@@ -1,10 +1,31 @@
 package com.somecode.common.spi.core;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * 压缩算法的SPI
+ * 只实现byte数组版本的扩展，可以通过默认方法使用流和ByteBuf版本
+ * 能够边读写边压缩的扩展应当重写流版本，避免中间的byte数组
  */
 public interface CompressAlgorithm {
 
+    /**
+     * 写入协议头的压缩算法id，1到127，同一种压缩算法的id不能重复
+     * 默认为0，表示没有固定的id，对方按照它自己配置的压缩算法解码，旧协议的帧也按0处理
+     * 没有重写的扩展仍然可以使用，只是不能与配置不同的对方互通
+     */
+    default byte getId() {
+        return 0;
+    }
+
     /**
      * 压缩算法
      */
@@ -15,4 +36,54 @@ public interface CompressAlgorithm {
      */
     public byte[] uncompress(byte[] input);
 
+    /**
+     * 包装输出流，写入的数据压缩后写到out
+     * 返回的流必须close，close时写完剩余数据，但不会关闭out
+     * 默认实现先攒下全部数据，close时调用byte数组版本
+     */
+    default OutputStream compress(OutputStream out) throws IOException {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                out.write(compress(toByteArray()));
+            }
+        };
+    }
+
+    /**
+     * 包装输入流，读取到的是解压后的数据
+     * 默认实现先读完全部数据，再调用byte数组版本
+     */
+    default InputStream uncompress(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(in.available(), 32));
+        byte[] buf = new byte[2048];
+        int count;
+        while ((count = in.read(buf)) != -1) {
+            bos.write(buf, 0, count);
+        }
+        return new ByteArrayInputStream(uncompress(bos.toByteArray()));
+    }
+
+    /**
+     * 压缩in的可读部分并写入out，不会release
+     */
+    default void compress(ByteBuf in, ByteBuf out) throws IOException {
+        try (OutputStream os = compress((OutputStream) new ByteBufOutputStream(out))) {
+            in.readBytes(os, in.readableBytes());
+        }
+    }
+
+    /**
+     * 解压in的可读部分并写入out，不会release
+     */
+    default void uncompress(ByteBuf in, ByteBuf out) throws IOException {
+        try (InputStream is = uncompress((InputStream) new ByteBufInputStream(in))) {
+            byte[] buf = new byte[2048];
+            int count;
+            while ((count = is.read(buf)) != -1) {
+                out.writeBytes(buf, 0, count);
+            }
+        }
+    }
+
 }
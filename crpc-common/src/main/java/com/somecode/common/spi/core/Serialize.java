@@ -1,10 +1,30 @@
 package com.somecode.common.spi.core;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * 序列化的SPI
+ * 只实现byte数组版本的扩展，可以通过默认方法使用流和ByteBuf版本
+ * 能够直接读写流的扩展应当重写流版本，避免中间的byte数组
  */
 public interface Serialize {
 
+    /**
+     * 写入协议头的序列化方式id，1到127，同一种序列化方式的id不能重复
+     * 默认为0，表示没有固定的id，对方按照它自己配置的序列化方式解码，旧协议的帧也按0处理
+     * 没有重写的扩展仍然可以使用，只是不能与配置不同的对方互通
+     */
+    default byte getId() {
+        return 0;
+    }
+
     /**
      * 序列化
      */
@@ -15,4 +35,38 @@ public interface Serialize {
      */
     public Object deserialize(byte[] bytes);
 
+    /**
+     * 序列化到输出流，不关闭流
+     */
+    default void serialize(Object object, OutputStream out) throws IOException {
+        out.write(serialize(object));
+    }
+
+    /**
+     * 从输入流反序列化，不关闭流
+     */
+    default Object deserialize(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(in.available(), 32));
+        byte[] buf = new byte[2048];
+        int count;
+        while ((count = in.read(buf)) != -1) {
+            bos.write(buf, 0, count);
+        }
+        return deserialize(bos.toByteArray());
+    }
+
+    /**
+     * 序列化并写入ByteBuf
+     */
+    default void serialize(Object object, ByteBuf out) throws IOException {
+        serialize(object, (OutputStream) new ByteBufOutputStream(out));
+    }
+
+    /**
+     * 从ByteBuf的可读部分反序列化，不会release
+     */
+    default Object deserialize(ByteBuf in) throws IOException {
+        return deserialize((InputStream) new ByteBufInputStream(in));
+    }
+
 }
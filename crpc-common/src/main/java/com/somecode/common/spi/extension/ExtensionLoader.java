@@ -71,6 +71,12 @@ public class ExtensionLoader<S> implements Iterable<S> {
      */
     private ConcurrentHashMap<String, String> configures = new ConcurrentHashMap<>();
 
+    /**
+     * 按接口缓存的ExtensionLoader，同一个接口只解析一次配置文件
+     * 键值对：接口 = ExtensionLoader
+     */
+    private static final ConcurrentHashMap<Class<?>, ExtensionLoader<?>> LOADERS = new ConcurrentHashMap<>();
+
     /**
      * 查找文件的路径
      */
@@ -152,6 +158,23 @@ public class ExtensionLoader<S> implements Iterable<S> {
         return ExtensionLoader.load(service, cl);
     }
 
+    /**
+     * 获取共用的ExtensionLoader对象，已经加载过的实现类不会重复加载
+     * 使用默认的类加载器
+     *
+     * @param service
+     * @param <S>
+     * @return
+     */
+    public static <S> ExtensionLoader<S> getExtensionLoader(Class<S> service) {
+        ExtensionLoader<S> extensionLoader = (ExtensionLoader<S>) LOADERS.get(service);
+        if (extensionLoader == null) {
+            LOADERS.putIfAbsent(service, ExtensionLoader.load(service));
+            extensionLoader = (ExtensionLoader<S>) LOADERS.get(service);
+        }
+        return extensionLoader;
+    }
+
     // 传入接口，没有定义构造器
     public static <S> ExtensionLoader<S> loadInstalled(Class<S> service) {
         // 一开始是AppClassLoader
@@ -186,6 +209,29 @@ public class ExtensionLoader<S> implements Iterable<S> {
         }
     }
 
+    /**
+     * 获取配置文件中的全部实现类，按需实例化，实例与getExtension获取的是同一个
+     * 无法加载的实现类会被跳过
+     */
+    public List<S> getExtensions() {
+        List<S> extensions = new ArrayList<>();
+        try {
+            // 三级查找，把配置文件中的所有实现类都加载到configures中
+            getExtensionForLevelThree();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return extensions;
+        }
+        String prefix = service.getName() + "#";
+        for (String configureKey : configures.keySet()) {
+            S s = getExtension(configureKey.substring(prefix.length()));
+            if (s != null) {
+                extensions.add(s);
+            }
+        }
+        return extensions;
+    }
+
     /**
      * 启动一级查找
      */
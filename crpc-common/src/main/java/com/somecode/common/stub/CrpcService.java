@@ -0,0 +1,17 @@
+package com.somecode.common.stub;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在服务接口上，编译时由crpc-processor生成客户端存根“接口名Stub”和服务端分发器“接口名Dispatcher”
+ * 客户端创建代理时优先使用生成的存根，服务端调用实现类时优先使用生成的分发器，都不再经过动态代理和反射
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface CrpcService {
+}
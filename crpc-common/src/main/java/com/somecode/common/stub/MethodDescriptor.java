@@ -0,0 +1,98 @@
+package com.somecode.common.stub;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+/**
+ * 服务接口中一个方法的描述，方法名和参数类型的类名唯一确定一个方法
+ * 生成的代码直接用常量创建，不需要反射，动态代理使用of(Method)创建
+ */
+public final class MethodDescriptor {
+
+    /**
+     * 方法名
+     */
+    private final String name;
+
+    /**
+     * 参数类型的类名，与Class.getName()一致，不允许修改
+     */
+    private final List<String> paramTypeNames;
+
+    /**
+     * 返回值类型为CompletableFuture、CompletionStage或者Future的方法，视为异步调用
+     */
+    private final boolean async;
+
+    public MethodDescriptor(String name, boolean async, String... paramTypeNames) {
+        this.name = name;
+        this.async = async;
+        // 序列化时会被当作普通的List写出，所以使用ArrayList而不是不可修改的包装
+        this.paramTypeNames = new ArrayList<>(Arrays.asList(paramTypeNames));
+    }
+
+    /**
+     * 根据接口方法创建
+     */
+    public static MethodDescriptor of(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] paramTypeNames = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            paramTypeNames[i] = parameterTypes[i].getName();
+        }
+        Class<?> returnType = method.getReturnType();
+        boolean async = returnType == CompletableFuture.class
+                || returnType == CompletionStage.class
+                || returnType == Future.class;
+        return new MethodDescriptor(method.getName(), async, paramTypeNames);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getParamTypeNames() {
+        return paramTypeNames;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * 是否是同一个方法，参数类型为null视为没有参数
+     */
+    public boolean matches(String methodName, List<String> paramTypeNames) {
+        return name.equals(methodName)
+                && this.paramTypeNames.equals(paramTypeNames == null ? Collections.emptyList() : paramTypeNames);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodDescriptor)) {
+            return false;
+        }
+        MethodDescriptor that = (MethodDescriptor) o;
+        return name.equals(that.name) && paramTypeNames.equals(that.paramTypeNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + paramTypeNames.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + paramTypeNames;
+    }
+
+}
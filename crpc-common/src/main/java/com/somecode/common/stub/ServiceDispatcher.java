@@ -0,0 +1,30 @@
+package com.somecode.common.stub;
+
+/**
+ * 一个服务接口的生成代码的入口，由crpc-processor为标注了@CrpcService的接口生成
+ * 客户端用它创建存根，服务端用它按下标调用实现类的方法
+ * 生成的实现类登记在META-INF/services/com.somecode.common.stub.ServiceDispatcher中
+ */
+public interface ServiceDispatcher<T> {
+
+    /**
+     * 服务接口
+     */
+    Class<T> getServiceType();
+
+    /**
+     * 接口中的方法，下标就是invoke和dispatch使用的index
+     */
+    MethodDescriptor[] getMethods();
+
+    /**
+     * 创建客户端存根
+     */
+    T newStub(StubInvoker invoker);
+
+    /**
+     * 调用实现类的第index个方法，实现类抛出的异常原样抛出
+     */
+    Object dispatch(T target, int index, Object[] args) throws Throwable;
+
+}
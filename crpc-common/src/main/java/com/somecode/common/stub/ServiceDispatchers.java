@@ -0,0 +1,61 @@
+package com.somecode.common.stub;
+
+import com.somecode.common.util.Holder;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成的分发器的缓存
+ * 每个模块编译时都会生成自己的登记文件，需要合并所有jar中的文件，所以使用JDK的ServiceLoader而不是ExtensionLoader
+ */
+public class ServiceDispatchers {
+
+    /**
+     * 键值对：接口全类名 = 分发器
+     */
+    private static volatile ConcurrentHashMap<String, ServiceDispatcher<?>> dispatcherMap = null;
+
+    /**
+     * 加载分发器的锁
+     */
+    private static Holder holder = new Holder();
+
+    /**
+     * 不允许创建对象
+     */
+    private ServiceDispatchers() {
+    }
+
+    /**
+     * 获取接口的分发器，接口没有标注@CrpcService时返回null
+     */
+    public static <T> ServiceDispatcher<T> get(Class<T> type) {
+        ServiceDispatcher<?> dispatcher = getDispatcherMap().get(type.getName());
+        // 同名的接口被不同的类加载器加载时不是同一个接口
+        if (dispatcher == null || dispatcher.getServiceType() != type) {
+            return null;
+        }
+        return (ServiceDispatcher<T>) dispatcher;
+    }
+
+    /**
+     * 第一次使用时加载全部分发器
+     */
+    private static ConcurrentHashMap<String, ServiceDispatcher<?>> getDispatcherMap() {
+        if (dispatcherMap == null) {
+            synchronized (holder) {
+                if (dispatcherMap == null) {
+                    ConcurrentHashMap<String, ServiceDispatcher<?>> map = new ConcurrentHashMap<>();
+                    for (ServiceDispatcher<?> dispatcher : ServiceLoader.load(ServiceDispatcher.class,
+                            ServiceDispatchers.class.getClassLoader())) {
+                        map.put(dispatcher.getServiceType().getName(), dispatcher);
+                    }
+                    dispatcherMap = map;
+                }
+            }
+        }
+        return dispatcherMap;
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.somecode.common.stub;
+
+/**
+ * 客户端存根发送请求的入口，由客户端实现
+ */
+public interface StubInvoker {
+
+    /**
+     * 调用服务接口的第index个方法，index为方法在getMethods()中的下标，没有参数时args为null
+     * 同步方法返回结果，异步方法返回future，远程调用失败抛出RuntimeException
+     */
+    Object invoke(int index, Object[] args);
+
+}
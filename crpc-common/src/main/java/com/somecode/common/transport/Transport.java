@@ -0,0 +1,258 @@
+package com.somecode.common.transport;
+
+import com.somecode.common.codec.StreamInflater;
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 根据传输层配置选择epoll或者nio，并设置socket参数
+ */
+public class Transport {
+
+    /**
+     * 压缩方式：每个数据包按照策略中的压缩算法单独压缩
+     */
+    public static final String MESSAGE_COMPRESSION = "message";
+
+    /**
+     * 压缩方式：整个连接共用一个deflate压缩流，不再单独压缩每个数据包
+     */
+    public static final String STREAM_COMPRESSION = "stream";
+
+    /**
+     * 协议：带有魔数和版本的帧头
+     */
+    public static final String CRPC_PROTOCOL = "crpc";
+
+    /**
+     * 协议：旧版本的帧头，用来连接还没有升级的服务端
+     */
+    public static final String LEGACY_PROTOCOL = "legacy";
+
+    /**
+     * 不允许创建对象
+     */
+    private Transport() { }
+
+    /**
+     * 是否使用epoll
+     * 配置为auto或者epoll时，epoll可用才会使用，否则退回nio
+     */
+    public static boolean useEpoll(TransportInfo transportInfo) {
+        String type = transportInfo.getType();
+        if ("nio".equalsIgnoreCase(type)) {
+            return false;
+        }
+        if (!"auto".equalsIgnoreCase(type) && !"epoll".equalsIgnoreCase(type)) {
+            throw new IllegalArgumentException("不支持的传输方式：" + type + "，可选auto、epoll、nio！");
+        }
+        return Epoll.isAvailable();
+    }
+
+    /**
+     * 创建事件循环组
+     */
+    public static EventLoopGroup newEventLoopGroup(TransportInfo transportInfo, int threads, ThreadFactory threadFactory) {
+        if (useEpoll(transportInfo)) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * 服务端通道的实现
+     */
+    public static Class<? extends ServerSocketChannel> serverChannelClass(TransportInfo transportInfo) {
+        return useEpoll(transportInfo) ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 客户端通道的实现
+     */
+    public static Class<? extends SocketChannel> socketChannelClass(TransportInfo transportInfo) {
+        return useEpoll(transportInfo) ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * 是否使用连接级别的压缩，客户端与服务端的配置必须一致
+     */
+    public static boolean useStreamCompression(TransportInfo transportInfo) {
+        String compression = transportInfo.getCompression();
+        if (STREAM_COMPRESSION.equalsIgnoreCase(compression)) {
+            return true;
+        }
+        if (!MESSAGE_COMPRESSION.equalsIgnoreCase(compression)) {
+            throw new IllegalArgumentException("不支持的压缩方式：" + compression + "，可选message、stream！");
+        }
+        return false;
+    }
+
+    /**
+     * 客户端是否使用旧协议
+     */
+    public static boolean useLegacyProtocol(TransportInfo transportInfo) {
+        String protocol = transportInfo.getProtocol();
+        if (LEGACY_PROTOCOL.equalsIgnoreCase(protocol)) {
+            return true;
+        }
+        if (!CRPC_PROTOCOL.equalsIgnoreCase(protocol)) {
+            throw new IllegalArgumentException("不支持的协议：" + protocol + "，可选crpc、legacy！");
+        }
+        return false;
+    }
+
+    /**
+     * 使用连接级别的压缩时，在帧编解码器之前加入deflate编解码器
+     * 整个连接共用一个32K的窗口，后面的数据包可以引用前面数据包中重复的内容
+     * 编码器每写出一个ByteBuf就SYNC_FLUSH一次，对方收到后可以立即解压，不会等待后面的数据
+     * 解压不使用JdkZlibDecoder，当前Netty版本的JdkZlibDecoder没有解压长度上限，收到的一小段数据可以解压出几个G
+     */
+    public static void addCompression(ChannelPipeline pipeline, TransportInfo transportInfo, int maxUncompressSize) {
+        if (!useStreamCompression(transportInfo)) {
+            return;
+        }
+        pipeline.addLast("inflater", new StreamInflater(maxUncompressSize));
+        pipeline.addLast("deflater", new JdkZlibEncoder(ZlibWrapper.NONE, transportInfo.getCompressionLevel()));
+    }
+
+    /**
+     * 服务端的socket参数
+     */
+    public static void applyServerOptions(ServerBootstrap bootstrap, TransportInfo transportInfo) {
+        bootstrap.option(ChannelOption.SO_BACKLOG, transportInfo.getSoBacklog());
+        if (useEpoll(transportInfo)) {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+            if (Boolean.TRUE.equals(transportInfo.getReusePort())) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+        applyChildOptions(bootstrap, transportInfo);
+    }
+
+    /**
+     * 客户端的socket参数
+     */
+    public static void applyClientOptions(Bootstrap bootstrap, TransportInfo transportInfo) {
+        if (useEpoll(transportInfo)) {
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+        applyOptions(bootstrap, transportInfo);
+    }
+
+    /**
+     * 连接通道的socket参数，服务端设置在childOption上
+     */
+    private static void applyChildOptions(ServerBootstrap bootstrap, TransportInfo transportInfo) {
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, transportInfo.getTcpNoDelay());
+        if (transportInfo.getSendBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, transportInfo.getSendBufferSize());
+        }
+        if (transportInfo.getReceiveBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, transportInfo.getReceiveBufferSize());
+        }
+        bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark(transportInfo));
+    }
+
+    /**
+     * 连接通道的socket参数
+     */
+    private static void applyOptions(AbstractBootstrap<?, ?> bootstrap, TransportInfo transportInfo) {
+        bootstrap.option(ChannelOption.TCP_NODELAY, transportInfo.getTcpNoDelay());
+        if (transportInfo.getSendBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, transportInfo.getSendBufferSize());
+        }
+        if (transportInfo.getReceiveBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, transportInfo.getReceiveBufferSize());
+        }
+        bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark(transportInfo));
+    }
+
+    private static WriteBufferWaterMark waterMark(TransportInfo transportInfo) {
+        return new WriteBufferWaterMark(transportInfo.getWriteBufferLowWaterMark(), transportInfo.getWriteBufferHighWaterMark());
+    }
+
+    /**
+     * 根据配置文件中的transport节点生成配置，没有配置的项使用默认值
+     */
+    public static TransportInfo parse(Map transportMap) {
+        TransportInfo transportInfo = new TransportInfo();
+        if (transportMap == null) {
+            return transportInfo;
+        }
+        try {
+            if (transportMap.get("type") != null) {
+                transportInfo.setType(transportMap.get("type").toString());
+            }
+            transportInfo.setBossThreads(getInteger(transportMap, "bossThreads", transportInfo.getBossThreads()));
+            transportInfo.setWorkerThreads(getInteger(transportMap, "workerThreads", transportInfo.getWorkerThreads()));
+            transportInfo.setReusePort(getBoolean(transportMap, "reusePort", transportInfo.getReusePort()));
+            transportInfo.setAcceptorChannels(getInteger(transportMap, "acceptorChannels", transportInfo.getAcceptorChannels()));
+            transportInfo.setSoBacklog(getInteger(transportMap, "soBacklog", transportInfo.getSoBacklog()));
+            transportInfo.setTcpNoDelay(getBoolean(transportMap, "tcpNoDelay", transportInfo.getTcpNoDelay()));
+            transportInfo.setSendBufferSize(getInteger(transportMap, "sendBufferSize", transportInfo.getSendBufferSize()));
+            transportInfo.setReceiveBufferSize(getInteger(transportMap, "receiveBufferSize", transportInfo.getReceiveBufferSize()));
+            transportInfo.setWriteBufferLowWaterMark(getInteger(transportMap, "writeBufferLowWaterMark", transportInfo.getWriteBufferLowWaterMark()));
+            transportInfo.setWriteBufferHighWaterMark(getInteger(transportMap, "writeBufferHighWaterMark", transportInfo.getWriteBufferHighWaterMark()));
+            if (transportMap.get("compression") != null) {
+                transportInfo.setCompression(transportMap.get("compression").toString());
+            }
+            transportInfo.setCompressionLevel(getInteger(transportMap, "compressionLevel", transportInfo.getCompressionLevel()));
+            transportInfo.setMaxFrameLength(getInteger(transportMap, "maxFrameLength", transportInfo.getMaxFrameLength()));
+            if (transportMap.get("protocol") != null) {
+                transportInfo.setProtocol(transportMap.get("protocol").toString());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("transport配置出错！", e);
+        }
+        if (transportInfo.getAcceptorChannels() < 1) {
+            throw new IllegalArgumentException("acceptorChannels不能小于1！");
+        }
+        if (transportInfo.getWriteBufferLowWaterMark() > transportInfo.getWriteBufferHighWaterMark()) {
+            throw new IllegalArgumentException("writeBufferLowWaterMark不能大于writeBufferHighWaterMark！");
+        }
+        if (transportInfo.getMaxFrameLength() <= 0) {
+            throw new IllegalArgumentException("maxFrameLength必须大于0！");
+        }
+        if (transportInfo.getCompressionLevel() < 0 || transportInfo.getCompressionLevel() > 9) {
+            throw new IllegalArgumentException("compressionLevel只能是0到9！");
+        }
+        if (useStreamCompression(transportInfo) && useLegacyProtocol(transportInfo)) {
+            throw new IllegalArgumentException("legacy协议不支持stream压缩方式！");
+        }
+        useLegacyProtocol(transportInfo);
+        return transportInfo;
+    }
+
+    private static Integer getInteger(Map map, String key, Integer defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : Integer.valueOf(value.toString());
+    }
+
+    private static Boolean getBoolean(Map map, String key, Boolean defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : Boolean.valueOf(value.toString());
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.somecode.common.transport;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 传输层配置，服务端与客户端共用
+ * 缓冲区大小等配置为0表示使用系统默认值
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransportInfo implements Serializable {
+
+    /**
+     * 传输方式：auto、epoll、nio
+     * auto在epoll可用时使用epoll，否则使用nio
+     */
+    private String type = "auto";
+
+    /**
+     * 处理连接请求的线程数，只对服务端有效
+     */
+    private Integer bossThreads = 1;
+
+    /**
+     * 处理读写的线程数，0为Netty默认值（CPU核数的两倍）
+     */
+    private Integer workerThreads = 0;
+
+    /**
+     * 是否开启SO_REUSEPORT，只在epoll下有效
+     */
+    private Boolean reusePort = false;
+
+    /**
+     * 同一个端口绑定的监听通道数，开启SO_REUSEPORT后由内核在这些通道间分配连接
+     */
+    private Integer acceptorChannels = 1;
+
+    /**
+     * 连接队列大小，只对服务端有效
+     */
+    private Integer soBacklog = 1024;
+
+    /**
+     * 是否关闭Nagle算法
+     */
+    private Boolean tcpNoDelay = true;
+
+    /**
+     * 发送缓冲区大小
+     */
+    private Integer sendBufferSize = 0;
+
+    /**
+     * 接收缓冲区大小
+     */
+    private Integer receiveBufferSize = 0;
+
+    /**
+     * 写缓冲区低水位
+     */
+    private Integer writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 写缓冲区高水位，超过后通道不可写
+     */
+    private Integer writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 压缩方式：message、stream
+     * message为每个数据包单独压缩，stream为整个连接共用一个压缩流，客户端与服务端必须一致
+     */
+    private String compression = "message";
+
+    /**
+     * 连接级别压缩的等级，0到9
+     */
+    private Integer compressionLevel = 1;
+
+    /**
+     * 协议：crpc、legacy
+     * crpc为带有魔数、版本、消息类型和编解码方式的帧头，legacy为旧版本的长度 + 请求Id的帧头，
+     * 数据总是压缩，返回的是执行结果本身，执行失败时为null
+     * 只对客户端生效，服务端按照客户端发来的第一帧自动识别
+     */
+    private String protocol = "crpc";
+
+    /**
+     * 一帧数据包的最大长度，超过时关闭连接
+     */
+    private Integer maxFrameLength = 8 * 1024 * 1024;
+
+}
@@ -0,0 +1,72 @@
+package com.somecode.core.compressAlgorithm;
+
+import com.somecode.core.configuration.InitCoreConfiguration;
+
+import java.util.Map;
+
+/**
+ * 获取配置文件中所有压缩算法共用的参数
+ */
+public class Configuration {
+
+    /**
+     * 默认的压缩阈值
+     */
+    private static final int DEFAULT_MIN_COMPRESS_SIZE = 512;
+
+    /**
+     * 默认的解压后最大长度，16MB
+     */
+    private static final int DEFAULT_MAX_UNCOMPRESS_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 数据包小于这个长度时不压缩，直接发送
+     * 小消息压缩节省的带宽抵不上消耗的CPU
+     */
+    public static int getMinCompressSize() {
+        Integer size = null;
+        try {
+            Map compressAlgorithm = (Map) InitCoreConfiguration.requireCoreConfigure("CompressAlgorithm");
+            Object value = compressAlgorithm == null ? null : compressAlgorithm.get("minCompressSize");
+            if (value != null) {
+                size = Integer.parseInt(value.toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("压缩阈值格式错误！");
+        }
+        if (size == null) {
+            return DEFAULT_MIN_COMPRESS_SIZE;
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("压缩阈值不能小于0，当前为" + size + "！");
+        }
+        return size;
+    }
+
+    /**
+     * 解压后的最大长度，超过时直接报错，不再申请内存
+     * 解压后的长度由对方决定，不能信任
+     */
+    public static int getMaxUncompressSize() {
+        Integer size = null;
+        try {
+            Map compressAlgorithm = (Map) InitCoreConfiguration.requireCoreConfigure("CompressAlgorithm");
+            Object value = compressAlgorithm == null ? null : compressAlgorithm.get("maxUncompressSize");
+            if (value != null) {
+                size = Integer.parseInt(value.toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("解压后最大长度格式错误！");
+        }
+        if (size == null) {
+            return DEFAULT_MAX_UNCOMPRESS_SIZE;
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("解压后最大长度必须大于0，当前为" + size + "！");
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.somecode.core.compressAlgorithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflater、Inflater的有界池
+ * 创建它们需要申请zlib的本地内存，成本远高于压缩一个小消息，所以用完reset后放回复用
+ * 池满时多出来的对象直接end释放
+ */
+public class ZlibPool {
+
+    /**
+     * 池的默认容量
+     */
+    private static final int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 压缩等级
+     */
+    private final int level;
+
+    /**
+     * 为true时不写zlib的头部和校验和，即原始的deflate数据，gzip使用
+     */
+    private final boolean nowrap;
+
+    private final ArrayBlockingQueue<Deflater> deflaters;
+
+    private final ArrayBlockingQueue<Inflater> inflaters;
+
+    public ZlibPool(int level, boolean nowrap) {
+        this(level, nowrap, DEFAULT_CAPACITY);
+    }
+
+    public ZlibPool(int level, boolean nowrap, int capacity) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.deflaters = new ArrayBlockingQueue<>(capacity);
+        this.inflaters = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 取出一个Deflater，池中没有就新建
+     */
+    public Deflater obtainDeflater() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    /**
+     * 放回Deflater
+     */
+    public void free(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 取出一个Inflater，池中没有就新建
+     */
+    public Inflater obtainInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    /**
+     * 放回Inflater
+     */
+    public void free(Inflater inflater) {
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 压缩后长度的上限，与zlib的deflateBound一致，再加上头部和校验和
+     */
+    public static int deflateBound(int length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+
+}
@@ -1,94 +1,174 @@
 package com.somecode.core.compressAlgorithm.deflate;
 
 import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.core.compressAlgorithm.ZlibPool;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
 /**
  * Deflate压缩算法
+ * 压缩等级只在创建时读取一次，Deflater、Inflater从池中取出，用完reset后放回
  */
 public class DeflateCompressAlgorithm implements CompressAlgorithm {
 
+    /**
+     * 流版本使用的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 2048;
+
+    /**
+     * 配置文件设置的压缩等级，创建时读取并校验
+     */
+    private final int level = Configuration.getDeflateLevel();
+
+    private final ZlibPool pool = new ZlibPool(level, false);
+
+    /**
+     * 解压后的最大长度
+     */
+    private final int maxUncompressSize = com.somecode.core.compressAlgorithm.Configuration.getMaxUncompressSize();
+
     /**
      * 压缩
+     * 输出数组按照压缩后长度的上限一次申请，压缩完只截取一次
      * @param input
      * @return
      */
     @Override
     public byte[] compress(byte[] input) {
-        // 获取配置文件设置的等级划分
-        Integer level = Configuration.getDeflateLevel();
-        if (level == null) {
-            // 默认等级为1
-            level = 1;
-        }
-        // 创建压缩算法类
-        Deflater compressor = new Deflater(level);
-        // 字节数组输入流
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        // 字节数组
-        byte[] bytes = null;
+        Deflater compressor = pool.obtainDeflater();
         try {
             // 输入字节数组
             compressor.setInput(input);
             // 调用时，表示压缩应以输入缓冲区的当前内容结束。
             compressor.finish();
-            // 缓冲区大小
-            final byte[] buf = new byte[2048];
-            // 如果已到达压缩数据输出流的末尾，则返回 true
-            // 没有结束就继续
+            byte[] output = new byte[ZlibPool.deflateBound(input.length)];
+            int length = 0;
+            // 上限足够大，一般一次就能压缩完
             while (!compressor.finished()) {
-                // 将压缩的内容输入到buf字节数组中
-                int count = compressor.deflate(buf);
-                // 将buf字节数组内容写入到bos中
-                bos.write(buf, 0, count);
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += compressor.deflate(output, length, output.length - length);
             }
-            bytes = bos.toByteArray();
+            return Arrays.copyOf(output, length);
         } finally {
-            // 关闭压缩器并丢弃任何未处理的输入
-            compressor.end();
-            try {
-                bos.close();
-            }catch (Exception e) {
-                e.printStackTrace();
-            }
+            // 放回池中复用
+            pool.free(compressor);
         }
-        // 返回压缩后的字节数组
-        return bytes;
     }
 
     /**
      * 解压
-     * 操作与上面类似，就不写注释了
+     * 输出数组先按输入长度的4倍申请，不够再翻倍，超过配置的上限时报错，不会继续申请内存
      * @param input
      * @return
      */
     @Override
     public byte[] uncompress(byte[] input) {
-        Inflater decompressor = new Inflater();
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] bytes = null;
+        Inflater decompressor = pool.obtainInflater();
         try {
             decompressor.setInput(input);
-            final byte[] buf = new byte[2048];
+            byte[] output = new byte[(int) Math.min(Math.max((long) input.length * 4, 64), maxUncompressSize)];
+            int length = 0;
             while (!decompressor.finished()) {
-                int count = decompressor.inflate(buf);
-                bos.write(buf, 0, count);
+                if (length == output.length) {
+                    if (length >= maxUncompressSize) {
+                        throw new ZipException("Deflate解压后的长度超过了" + maxUncompressSize);
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min((long) output.length * 2, maxUncompressSize));
+                }
+                int count = decompressor.inflate(output, length, output.length - length);
+                if (count == 0 && !decompressor.finished()
+                        && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    // 数据不完整，不能继续等待
+                    throw new DataFormatException("Deflate数据不完整！");
+                }
+                length += count;
             }
-            bytes = bos.toByteArray();
+            return Arrays.copyOf(output, length);
+        } catch (ZipException e) {
+            throw new UncheckedIOException(e);
         } catch (DataFormatException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(new IOException("Deflate解压失败！", e));
         } finally {
-            decompressor.end();
-            try{
-                bos.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            pool.free(decompressor);
         }
-        return bytes;
     }
+
+    /**
+     * 边写边压缩，压缩结果直接写入out
+     * close时结束压缩并把Deflater放回池中，不会关闭out
+     */
+    @Override
+    public OutputStream compress(OutputStream out) {
+        Deflater compressor = pool.obtainDeflater();
+        return new DeflaterOutputStream(out, compressor, BUFFER_SIZE) {
+
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    finish();
+                } finally {
+                    pool.free(compressor);
+                }
+            }
+        };
+    }
+
+    /**
+     * 边读边解压，close时把Inflater放回池中，不会关闭in
+     * 解压出的总长度超过配置的上限时报错
+     */
+    @Override
+    public InputStream uncompress(InputStream in) {
+        Inflater decompressor = pool.obtainInflater();
+        return new InflaterInputStream(in, decompressor, BUFFER_SIZE) {
+
+            private boolean closed = false;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                if (count > 0 && decompressor.getBytesWritten() > maxUncompressSize) {
+                    throw new ZipException("Deflate解压后的长度超过了" + maxUncompressSize);
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pool.free(decompressor);
+            }
+        };
+    }
+
+    /**
+     * 协议头中的压缩算法id
+     */
+    @Override
+    public byte getId() {
+        return 1;
+    }
+
 }
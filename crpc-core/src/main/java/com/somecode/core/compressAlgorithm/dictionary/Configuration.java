@@ -0,0 +1,106 @@
+package com.somecode.core.compressAlgorithm.dictionary;
+
+import com.somecode.core.configuration.InitCoreConfiguration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 获取配置文件中的参数
+ */
+public class Configuration {
+
+    /**
+     * 默认等级为1
+     */
+    private static final int DEFAULT_LEVEL = 1;
+
+    /**
+     * 默认采集的样本数
+     */
+    private static final int DEFAULT_CAPTURE_LIMIT = 1000;
+
+    /**
+     * 压缩等级
+     */
+    public static int getLevel() {
+        Object value = get("level");
+        if (value == null) {
+            return DEFAULT_LEVEL;
+        }
+        int level = parseInt(value, "level");
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Dictionary压缩等级只能是-1到9，当前为" + level + "！");
+        }
+        return level;
+    }
+
+    /**
+     * 压缩时使用的字典id，默认使用内置字典
+     */
+    public static int getDictionaryId() {
+        Object value = get("dictionaryId");
+        return value == null ? Dictionaries.DEFAULT_ID : parseInt(value, "dictionaryId");
+    }
+
+    /**
+     * 额外的字典，id -> classpath中的资源或者文件路径
+     * 解压时按照数据中的id选择字典，所以接收方需要配置发送方可能使用的全部字典
+     */
+    public static Map<Integer, String> getDictionaries() {
+        Object value = get("dictionaries");
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, String> dictionaries = new LinkedHashMap<>();
+        try {
+            Map map = (Map) value;
+            for (Object key : map.keySet()) {
+                dictionaries.put(Integer.parseInt(key.toString()), map.get(key).toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Dictionary字典配置格式错误！");
+        }
+        return dictionaries;
+    }
+
+    /**
+     * 采集压缩前数据包的目录，用来离线训练字典，为空时不采集
+     */
+    public static String getCaptureDir() {
+        Object value = get("captureDir");
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 最多采集的样本数
+     */
+    public static int getCaptureLimit() {
+        Object value = get("captureLimit");
+        return value == null ? DEFAULT_CAPTURE_LIMIT : parseInt(value, "captureLimit");
+    }
+
+    private static Object get(String name) {
+        try {
+            Map compressAlgorithm = (Map) InitCoreConfiguration.requireCoreConfigure("CompressAlgorithm");
+            Map dictionaryCompressAlgorithm = compressAlgorithm == null ? null
+                    : (Map) compressAlgorithm.get("DictionaryCompressAlgorithm");
+            return dictionaryCompressAlgorithm == null ? null : dictionaryCompressAlgorithm.get(name);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Dictionary压缩算法格式错误！");
+        }
+    }
+
+    private static int parseInt(Object value, String name) {
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Dictionary压缩算法的" + name + "格式错误：" + value);
+        }
+    }
+
+}
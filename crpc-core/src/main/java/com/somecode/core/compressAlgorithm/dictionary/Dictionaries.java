@@ -0,0 +1,136 @@
+package com.somecode.core.compressAlgorithm.dictionary;
+
+import com.somecode.common.util.Holder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字典表，客户端和服务端按照id约定使用同一份字典
+ * id为0表示不使用字典，1为内置字典，其他id来自配置文件
+ */
+public class Dictionaries {
+
+    /**
+     * 不使用字典
+     */
+    public static final int NONE = 0;
+
+    /**
+     * 内置字典的id
+     */
+    public static final int DEFAULT_ID = 1;
+
+    /**
+     * 最大的id，数据中用2字节保存
+     */
+    public static final int MAX_ID = 0xffff;
+
+    /**
+     * deflate的窗口只有32K，更早的内容用不上
+     */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    /**
+     * 内置字典的内容，RequestMessage以及常见类型的名字
+     * deflate引用越近的内容越便宜，所以最常出现的放在最后
+     * 内容一旦发布就不能修改，否则新旧两端无法互通，需要新的内容请配置新的id
+     */
+    private static final String[] BUILT_IN = {
+            "java.math.BigDecimal", "java.math.BigInteger", "java.util.Date", "java.time.LocalDateTime",
+            "java.util.LinkedHashMap", "java.util.HashMap", "java.util.Map", "java.util.HashSet", "java.util.Set",
+            "java.util.Collection", "java.util.concurrent.CompletableFuture",
+            "java.lang.Object", "java.lang.Boolean", "java.lang.Double", "java.lang.Float", "java.lang.Short",
+            "java.lang.Byte", "java.lang.Character", "boolean", "double", "float", "short", "byte", "char",
+            "java.lang.Long", "long", "java.lang.Integer", "int", "java.lang.String",
+            "java.util.List", "java.util.ArrayList", "java.util.Arrays$ArrayList", "[Ljava.lang.Object;",
+            "com.somecode.common.entity.ResponseMessage", "result", "name", "id", "type", "value", "data",
+            "com.somecode.common.entity.RequestMessage",
+            "className", "methodName", "paramObjectList", "paramObjectTypeLit"
+    };
+
+    private static volatile Map<Integer, byte[]> dictionaries = null;
+
+    private static Holder holder = new Holder();
+
+    /**
+     * 根据id获取字典，NONE返回null
+     */
+    public static byte[] get(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        byte[] dictionary = load().get(id);
+        if (dictionary == null) {
+            throw new IllegalArgumentException("不存在id为" + id + "的字典！");
+        }
+        return dictionary;
+    }
+
+    /**
+     * 内置字典
+     */
+    public static byte[] builtIn() {
+        return String.join("", BUILT_IN).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<Integer, byte[]> load() {
+        if (dictionaries == null) {
+            synchronized (holder) {
+                if (dictionaries == null) {
+                    Map<Integer, byte[]> map = new HashMap<>();
+                    map.put(DEFAULT_ID, builtIn());
+                    for (Map.Entry<Integer, String> entry : Configuration.getDictionaries().entrySet()) {
+                        int id = entry.getKey();
+                        if (id <= DEFAULT_ID || id > MAX_ID) {
+                            throw new IllegalArgumentException("字典id只能是2到" + MAX_ID + "，当前为" + id + "！");
+                        }
+                        map.put(id, read(entry.getValue()));
+                    }
+                    dictionaries = map;
+                }
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * 先从classpath中查找，找不到再当作文件路径
+     * 超过32K的只保留最后32K
+     */
+    private static byte[] read(String location) {
+        byte[] bytes;
+        try (InputStream in = Dictionaries.class.getClassLoader().getResourceAsStream(location)) {
+            if (in != null) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                byte[] buf = new byte[2048];
+                int count;
+                while ((count = in.read(buf)) != -1) {
+                    bos.write(buf, 0, count);
+                }
+                bytes = bos.toByteArray();
+            } else {
+                Path path = Paths.get(location);
+                if (!Files.isRegularFile(path)) {
+                    throw new IllegalArgumentException("字典" + location + "不存在！");
+                }
+                bytes = Files.readAllBytes(path);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("读取字典" + location + "失败！", e);
+        }
+        if (bytes.length > MAX_SIZE) {
+            bytes = Arrays.copyOfRange(bytes, bytes.length - MAX_SIZE, bytes.length);
+        }
+        return bytes;
+    }
+
+}
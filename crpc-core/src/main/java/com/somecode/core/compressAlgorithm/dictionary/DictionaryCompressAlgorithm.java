@@ -0,0 +1,254 @@
+package com.somecode.core.compressAlgorithm.dictionary;
+
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.core.compressAlgorithm.ZlibPool;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 字典压缩算法
+ * 小消息自身的重复内容很少，单独压缩几乎没有效果，但是不同消息之间高度相似（类名、方法名、字段名）
+ * 压缩前给Deflater预置一份字典，消息中与字典相同的内容只需要写一个引用
+ * 格式：2字节字典id + 原始的deflate数据，解压时按照id选择字典，双方只需要约定字典的id
+ */
+public class DictionaryCompressAlgorithm implements CompressAlgorithm {
+
+    /**
+     * 字典id的长度
+     */
+    private static final int ID_LENGTH = 2;
+
+    /**
+     * 压缩时使用的字典
+     */
+    private final int dictionaryId = Configuration.getDictionaryId();
+
+    private final byte[] dictionary = Dictionaries.get(dictionaryId);
+
+    private final ZlibPool pool = new ZlibPool(Configuration.getLevel(), true);
+
+    /**
+     * 等待写入磁盘的样本的最大数量，队列满时直接丢弃新的样本
+     */
+    private static final int CAPTURE_QUEUE_SIZE = 64;
+
+    /**
+     * 采集样本的目录，为空时不采集
+     */
+    private final Path captureDir = initCaptureDir();
+
+    private final int captureLimit = Configuration.getCaptureLimit();
+
+    private final AtomicInteger captured = new AtomicInteger(0);
+
+    /**
+     * 等待写入磁盘的样本，由后台线程写入，压缩的线程只负责放入队列
+     */
+    private final BlockingQueue<byte[]> captureQueue = captureDir == null ? null
+            : new ArrayBlockingQueue<>(CAPTURE_QUEUE_SIZE);
+
+    /**
+     * 解压后的最大长度
+     */
+    private final int maxUncompressSize = com.somecode.core.compressAlgorithm.Configuration.getMaxUncompressSize();
+
+    public DictionaryCompressAlgorithm() {
+        if (captureQueue != null) {
+            Thread writer = new Thread(this::writeSamples, "crpc-dictionary-capture");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    @Override
+    public byte[] compress(byte[] input) {
+        byte[] output = new byte[ID_LENGTH + ZlibPool.deflateBound(input.length)];
+        int length = compress(input, 0, input.length, output, 0);
+        return Arrays.copyOf(output, length);
+    }
+
+    @Override
+    public byte[] uncompress(byte[] input) {
+        try {
+            return uncompress(input, 0, input.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 输入输出是堆内存时直接使用背后的数组
+     */
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = ID_LENGTH + ZlibPool.deflateBound(length);
+        byte[] input;
+        int inputOffset;
+        if (in.hasArray()) {
+            input = in.array();
+            inputOffset = in.arrayOffset() + in.readerIndex();
+        } else {
+            input = ByteBufUtil.getBytes(in);
+            inputOffset = 0;
+        }
+        out.ensureWritable(maxLength);
+        if (out.hasArray()) {
+            int written = compress(input, inputOffset, length, out.array(), out.arrayOffset() + out.writerIndex());
+            out.writerIndex(out.writerIndex() + written);
+        } else {
+            byte[] output = new byte[maxLength];
+            out.writeBytes(output, 0, compress(input, inputOffset, length, output, 0));
+        }
+        in.skipBytes(length);
+    }
+
+    @Override
+    public void uncompress(ByteBuf in, ByteBuf out) throws IOException {
+        int length = in.readableBytes();
+        byte[] output;
+        if (in.hasArray()) {
+            output = uncompress(in.array(), in.arrayOffset() + in.readerIndex(), length);
+        } else {
+            byte[] input = ByteBufUtil.getBytes(in);
+            output = uncompress(input, 0, input.length);
+        }
+        in.skipBytes(length);
+        out.writeBytes(output);
+    }
+
+    /**
+     * 压缩到output的offset处，返回写入的长度，output的剩余空间不能小于压缩后长度的上限
+     */
+    private int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int offset) {
+        capture(input, inputOffset, inputLength);
+        Deflater deflater = pool.obtainDeflater();
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, inputOffset, inputLength);
+            deflater.finish();
+            output[offset] = (byte) (dictionaryId >> 8);
+            output[offset + 1] = (byte) dictionaryId;
+            int length = ID_LENGTH;
+            while (!deflater.finished()) {
+                length += deflater.deflate(output, offset + length, output.length - offset - length);
+            }
+            return length;
+        } finally {
+            pool.free(deflater);
+        }
+    }
+
+    /**
+     * 解压后的长度超过配置的上限时报错，不会继续申请内存
+     */
+    private byte[] uncompress(byte[] input, int inputOffset, int inputLength) throws IOException {
+        if (inputLength < ID_LENGTH) {
+            throw new ZipException("Dictionary数据不完整！");
+        }
+        int id = (input[inputOffset] & 0xff) << 8 | (input[inputOffset + 1] & 0xff);
+        byte[] dictionary = Dictionaries.get(id);
+        Inflater inflater = pool.obtainInflater();
+        try {
+            // 原始的deflate数据没有头部，开始解压之前就可以设置字典
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(input, inputOffset + ID_LENGTH, inputLength - ID_LENGTH);
+            byte[] output = new byte[(int) Math.min(Math.max((long) inputLength * 4, 64), maxUncompressSize)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    if (length >= maxUncompressSize) {
+                        throw new ZipException("Dictionary解压后的长度超过了" + maxUncompressSize);
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min((long) output.length * 2, maxUncompressSize));
+                }
+                int count = inflater.inflate(output, length, output.length - length);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Dictionary数据不完整！");
+                }
+                length += count;
+            }
+            return Arrays.copyOf(output, length);
+        } catch (DataFormatException e) {
+            throw new ZipException("Dictionary解压失败：" + e.getMessage());
+        } finally {
+            pool.free(inflater);
+        }
+    }
+
+    /**
+     * 采集压缩前的数据包，作为DictionaryTrainer的样本
+     * 在请求的IO路径上执行，只复制数据放入队列，由后台线程写入磁盘，队列满时丢弃
+     */
+    private void capture(byte[] input, int offset, int length) {
+        if (captureQueue == null || captured.get() >= captureLimit) {
+            return;
+        }
+        if (captured.getAndIncrement() >= captureLimit) {
+            return;
+        }
+        if (!captureQueue.offer(Arrays.copyOfRange(input, offset, offset + length))) {
+            // 丢弃的样本不计数，之后的数据包还可以补上
+            captured.decrementAndGet();
+        }
+    }
+
+    /**
+     * 后台线程：把队列中的样本写入磁盘，采集够了就退出
+     */
+    private void writeSamples() {
+        int index = 0;
+        try {
+            while (index < captureLimit) {
+                byte[] sample = captureQueue.take();
+                try {
+                    Files.write(captureDir.resolve("sample-" + index + ".bin"), sample);
+                    index++;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Path initCaptureDir() {
+        String dir = Configuration.getCaptureDir();
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        try {
+            return Files.createDirectories(Paths.get(dir));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法创建样本目录" + dir + "！", e);
+        }
+    }
+
+    /**
+     * 协议头中的压缩算法id
+     */
+    @Override
+    public byte getId() {
+        return 5;
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.somecode.core.compressAlgorithm.dictionary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * 离线训练字典
+ * 用法：DictionaryTrainer 样本目录 输出文件 [字典大小，默认4096] [片段长度，默认16]
+ * 样本可以通过配置DictionaryCompressAlgorithm的captureDir采集，每个文件是一个压缩前的数据包
+ * 统计每个固定长度的片段出现在多少个样本中，从出现最多的开始，向两边扩展成出现次数相近的最长内容，
+ * 直到达到字典大小，出现最多的内容放在字典的最后
+ * 训练出的字典通过配置新的id分发给客户端和服务端
+ */
+public class DictionaryTrainer {
+
+    private static final int DEFAULT_SIZE = 4096;
+
+    private static final int DEFAULT_SEGMENT_LENGTH = 16;
+
+    /**
+     * 向两边扩展时，相邻片段的出现次数不能低于当前片段的这个比例
+     */
+    private static final double EXTEND_RATIO = 0.9;
+
+    /**
+     * 出现的样本数低于这个比例的片段不放入字典，至少要出现在两个样本中
+     */
+    private static final double MIN_FREQUENCY_RATIO = 0.02;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("用法：DictionaryTrainer 样本目录 输出文件 [字典大小] [片段长度]");
+            return;
+        }
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+        int segmentLength = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SEGMENT_LENGTH;
+        if (size <= 0 || size > Dictionaries.MAX_SIZE) {
+            throw new IllegalArgumentException("字典大小只能是1到" + Dictionaries.MAX_SIZE + "！");
+        }
+        List<byte[]> samples = readSamples(Paths.get(args[0]));
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException(args[0] + "中没有样本！");
+        }
+        byte[] dictionary = train(samples, size, segmentLength);
+        Files.write(Paths.get(args[1]), dictionary);
+        System.out.println("样本数：" + samples.size() + "，字典大小：" + dictionary.length);
+        System.out.println("无字典压缩后总长度：" + compressedSize(samples, null));
+        System.out.println("内置字典压缩后总长度：" + compressedSize(samples, Dictionaries.builtIn()));
+        System.out.println("训练字典压缩后总长度：" + compressedSize(samples, dictionary));
+    }
+
+    /**
+     * 训练字典
+     */
+    public static byte[] train(List<byte[]> samples, int size, int segmentLength) {
+        // 片段 -> {出现的样本数, 第一次出现的样本, 第一次出现的位置}
+        // ISO_8859_1与字节一一对应，可以直接用字符串做键
+        Map<String, int[]> segments = new HashMap<>();
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i + segmentLength <= sample.length; i++) {
+                String segment = new String(sample, i, segmentLength, StandardCharsets.ISO_8859_1);
+                if (!seen.add(segment)) {
+                    continue;
+                }
+                int[] stat = segments.get(segment);
+                if (stat == null) {
+                    segments.put(segment, new int[]{1, s, i});
+                } else {
+                    stat[0]++;
+                }
+            }
+        }
+        // 只出现在很少样本中的内容对其他消息没有帮助
+        int minFrequency = Math.max(2, (int) Math.ceil(samples.size() * MIN_FREQUENCY_RATIO));
+        List<Map.Entry<String, int[]>> candidates = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : segments.entrySet()) {
+            if (entry.getValue()[0] >= minFrequency) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> b.getValue()[0] != a.getValue()[0]
+                ? Integer.compare(b.getValue()[0], a.getValue()[0]) : a.getKey().compareTo(b.getKey()));
+        List<String> chosen = new ArrayList<>();
+        StringBuilder all = new StringBuilder();
+        int total = 0;
+        for (Map.Entry<String, int[]> candidate : candidates) {
+            if (total >= size) {
+                break;
+            }
+            if (all.indexOf(candidate.getKey()) >= 0) {
+                continue;
+            }
+            String content = extend(samples.get(candidate.getValue()[1]), candidate.getValue()[2],
+                    segmentLength, candidate.getValue()[0], segments);
+            if (total + content.length() > size) {
+                content = content.substring(0, size - total);
+            }
+            chosen.add(content);
+            all.append(content).append('\0');
+            total += content.length();
+        }
+        // 出现最多的放在最后，离压缩的数据最近
+        Collections.reverse(chosen);
+        return String.join("", chosen).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 从样本中的片段向两边扩展，相邻片段的出现次数与当前片段相近就并入
+     * 出现次数高得多的内容已经在前面选入，出现次数低得多的内容不值得放入字典
+     */
+    private static String extend(byte[] sample, int offset, int segmentLength, int frequency,
+                                 Map<String, int[]> segments) {
+        int min = (int) Math.ceil(frequency * EXTEND_RATIO);
+        int max = (int) Math.floor(frequency / EXTEND_RATIO);
+        int start = offset;
+        int end = offset + segmentLength;
+        while (start > 0 && similar(sample, start - 1, segmentLength, min, max, segments)) {
+            start--;
+        }
+        while (end < sample.length && similar(sample, end - segmentLength + 1, segmentLength, min, max, segments)) {
+            end++;
+        }
+        return new String(sample, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean similar(byte[] sample, int offset, int segmentLength, int min, int max,
+                                   Map<String, int[]> segments) {
+        int[] stat = segments.get(new String(sample, offset, segmentLength, StandardCharsets.ISO_8859_1));
+        return stat != null && stat[0] >= min && stat[0] <= max;
+    }
+
+    private static List<byte[]> readSamples(Path dir) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    samples.add(Files.readAllBytes(path));
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 逐个压缩样本，统计压缩后的总长度
+     */
+    private static long compressedSize(List<byte[]> samples, byte[] dictionary) {
+        long total = 0;
+        byte[] output = new byte[64 * 1024];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            for (byte[] sample : samples) {
+                deflater.reset();
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(sample);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    total += deflater.deflate(output);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return total;
+    }
+
+}
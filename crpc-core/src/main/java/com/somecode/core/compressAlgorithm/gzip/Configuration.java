@@ -0,0 +1,43 @@
+package com.somecode.core.compressAlgorithm.gzip;
+
+import com.somecode.core.configuration.InitCoreConfiguration;
+
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 获取配置文件中的参数
+ */
+public class Configuration {
+
+    /**
+     * 默认等级为1
+     */
+    private static final int DEFAULT_LEVEL = 1;
+
+    /**
+     * 读取并校验压缩等级，只在创建压缩算法时调用一次
+     */
+    public static int getGzipLevel() {
+        Integer level = null;
+        try {
+            Map compressAlgorithm = (Map) InitCoreConfiguration.requireCoreConfigure("CompressAlgorithm");
+            Map gzipCompressAlgorithm = (Map) compressAlgorithm.get("GzipCompressAlgorithm");
+            Object value = gzipCompressAlgorithm.get("level");
+            if (value != null) {
+                level = Integer.parseInt(value.toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Gzip压缩算法格式错误！");
+        }
+        if (level == null) {
+            return DEFAULT_LEVEL;
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Gzip压缩等级只能是-1到9，当前为" + level + "！");
+        }
+        return level;
+    }
+
+}
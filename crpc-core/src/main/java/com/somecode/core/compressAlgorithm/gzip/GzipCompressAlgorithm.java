@@ -1,49 +1,374 @@
 package com.somecode.core.compressAlgorithm.gzip;
 
 import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.core.compressAlgorithm.ZlibPool;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
+/**
+ * Gzip压缩算法
+ * 按字节处理，不经过字符转换，可以用于任意二进制数据
+ * 头部和尾部自己读写，中间的deflate数据使用池化的Deflater、Inflater（nowrap）
+ */
 public class GzipCompressAlgorithm implements CompressAlgorithm {
 
+    /**
+     * gzip魔数
+     */
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    /**
+     * 压缩方法，只有deflate
+     */
+    private static final int DEFLATED = 8;
+
+    /**
+     * 头部标志位
+     */
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * 写出的头部：魔数、压缩方法，没有标志位、修改时间等信息
+     */
+    private static final byte[] HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    /**
+     * 尾部长度：CRC32 + 原始长度
+     */
+    private static final int TRAILER_LENGTH = 8;
+
+    /**
+     * 流版本使用的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 2048;
+
+    /**
+     * deflate的最大压缩比，用来判断尾部记录的原始长度是否可信
+     */
+    private static final int MAX_RATIO = 1032;
+
+    private final ZlibPool pool = new ZlibPool(Configuration.getGzipLevel(), true);
+
+    /**
+     * 解压后的最大长度
+     */
+    private final int maxUncompressSize = com.somecode.core.compressAlgorithm.Configuration.getMaxUncompressSize();
+
+    /**
+     * 压缩
+     * 输出数组按照压缩后长度的上限一次申请，压缩完只截取一次
+     */
     @Override
     public byte[] compress(byte[] input) {
+        Deflater deflater = pool.obtainDeflater();
         try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(input.length);
-            GZIPOutputStream gZIPOutputStream = new GZIPOutputStream(byteArrayOutputStream);
-            gZIPOutputStream.write(input);
-            gZIPOutputStream.close();
-            byteArrayOutputStream.close();
-            return byteArrayOutputStream.toByteArray();
-        } catch (IOException unused) {
-            return input;
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] output = new byte[HEADER.length + ZlibPool.deflateBound(input.length) + TRAILER_LENGTH];
+            System.arraycopy(HEADER, 0, output, 0, HEADER.length);
+            int length = HEADER.length;
+            while (!deflater.finished()) {
+                if (output.length - length <= TRAILER_LENGTH) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length - TRAILER_LENGTH);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(input, 0, input.length);
+            writeIntLE(output, length, (int) crc.getValue());
+            writeIntLE(output, length + 4, input.length);
+            return Arrays.copyOf(output, length + TRAILER_LENGTH);
+        } finally {
+            pool.free(deflater);
         }
     }
 
+    /**
+     * 解压
+     * 输出数组按照尾部记录的原始长度申请，校验CRC32和长度
+     * 尾部来自对方，申请的长度和解压出的长度都不会超过配置的上限
+     */
     @Override
     public byte[] uncompress(byte[] input) {
+        Inflater inflater = pool.obtainInflater();
         try {
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(input);
-            GZIPInputStream gZIPInputStream = new GZIPInputStream(byteArrayInputStream);
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(gZIPInputStream, StandardCharsets.UTF_8));
-            StringBuilder sb2 = new StringBuilder();
-            while (true) {
-                String readLine = bufferedReader.readLine();
-                if (readLine != null) {
-                    sb2.append(readLine);
+            int offset = headerLength(input);
+            if (input.length - offset < TRAILER_LENGTH) {
+                throw new EOFException("Gzip数据不完整！");
+            }
+            // 尾部记录的是原始长度对2^32取模的值，超出最大压缩比的按输入长度估算
+            long size = readIntLE(input, input.length - 4) & 0xffffffffL;
+            long limit = (long) input.length * MAX_RATIO;
+            byte[] output = new byte[(int) Math.min(size <= limit ? size : input.length * 4L, maxUncompressSize)];
+            inflater.setInput(input, offset, input.length - offset);
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    if (length >= maxUncompressSize) {
+                        throw new ZipException("Gzip解压后的长度超过了" + maxUncompressSize);
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(Math.max((long) output.length * 2, 64),
+                            maxUncompressSize));
+                }
+                int count = inflater.inflate(output, length, output.length - length);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Gzip数据不完整！");
+                }
+                length += count;
+            }
+            int trailer = input.length - inflater.getRemaining();
+            if (input.length - trailer < TRAILER_LENGTH) {
+                throw new EOFException("Gzip数据不完整！");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(output, 0, length);
+            checkTrailer(readIntLE(input, trailer), readIntLE(input, trailer + 4), crc, length);
+            return length == output.length ? output : Arrays.copyOf(output, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new ZipException("Gzip解压失败：" + e.getMessage()));
+        } finally {
+            pool.free(inflater);
+        }
+    }
+
+    /**
+     * 边写边压缩，压缩结果直接写入out
+     * close时写入gzip尾部并把Deflater放回池中，不会关闭out
+     */
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        Deflater deflater = pool.obtainDeflater();
+        out.write(HEADER);
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+
+            private final CRC32 crc = new CRC32();
+
+            private boolean closed = false;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                super.write(b, off, len);
+                crc.update(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    finish();
+                    byte[] trailer = new byte[TRAILER_LENGTH];
+                    writeIntLE(trailer, 0, (int) crc.getValue());
+                    writeIntLE(trailer, 4, (int) deflater.getBytesRead());
+                    out.write(trailer);
+                } finally {
+                    pool.free(deflater);
+                }
+            }
+        };
+    }
+
+    /**
+     * 边读边解压，读到末尾时校验CRC32和长度，解压出的总长度超过配置的上限时报错
+     * close时把Inflater放回池中，不会关闭in
+     */
+    @Override
+    public InputStream uncompress(InputStream in) throws IOException {
+        skipHeader(in);
+        Inflater inflater = pool.obtainInflater();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+
+            private final CRC32 crc = new CRC32();
+
+            private boolean eos = false;
+
+            private boolean closed = false;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (eos) {
+                    return -1;
+                }
+                int count = super.read(b, off, len);
+                if (count == -1) {
+                    eos = true;
+                    readTrailer();
                 } else {
-                    bufferedReader.close();
-                    gZIPInputStream.close();
-                    byteArrayInputStream.close();
-                    return sb2.toString().getBytes();
+                    if (inflater.getBytesWritten() > maxUncompressSize) {
+                        throw new ZipException("Gzip解压后的长度超过了" + maxUncompressSize);
+                    }
+                    crc.update(b, off, count);
+                }
+                return count;
+            }
+
+            /**
+             * 尾部可能有一部分已经读入了缓冲区，剩下的从流中读取
+             */
+            private void readTrailer() throws IOException {
+                byte[] trailer = new byte[TRAILER_LENGTH];
+                int remaining = Math.min(inflater.getRemaining(), TRAILER_LENGTH);
+                System.arraycopy(buf, len - inflater.getRemaining(), trailer, 0, remaining);
+                readFully(in, trailer, remaining, TRAILER_LENGTH - remaining);
+                checkTrailer(readIntLE(trailer, 0), readIntLE(trailer, 4), crc, inflater.getBytesWritten());
+            }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
                 }
+                closed = true;
+                pool.free(inflater);
+            }
+        };
+    }
+
+    /**
+     * 校验尾部记录的CRC32和原始长度
+     */
+    private static void checkTrailer(int expectedCrc, int expectedSize, CRC32 crc, long size) throws ZipException {
+        if (expectedCrc != (int) crc.getValue()) {
+            throw new ZipException("Gzip数据CRC校验失败！");
+        }
+        if (expectedSize != (int) size) {
+            throw new ZipException("Gzip数据长度校验失败！");
+        }
+    }
+
+    /**
+     * 解析数组中的头部，返回头部长度
+     */
+    private static int headerLength(byte[] input) throws IOException {
+        if (input.length < HEADER.length) {
+            throw new EOFException("Gzip数据不完整！");
+        }
+        checkMagic(input[0] & 0xff | (input[1] & 0xff) << 8, input[2] & 0xff);
+        int flags = input[3] & 0xff;
+        int offset = HEADER.length;
+        if ((flags & FEXTRA) != 0) {
+            if (offset + 2 > input.length) {
+                throw new EOFException("Gzip数据不完整！");
+            }
+            offset += 2 + ((input[offset] & 0xff) | (input[offset + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            while (offset < input.length && input[offset++] != 0) {
+                // 跳过文件名
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (offset < input.length && input[offset++] != 0) {
+                // 跳过注释
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+        if (offset > input.length) {
+            throw new EOFException("Gzip数据不完整！");
+        }
+        return offset;
+    }
+
+    /**
+     * 读取并跳过流中的头部
+     */
+    private static void skipHeader(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER.length];
+        readFully(in, header, 0, header.length);
+        checkMagic(header[0] & 0xff | (header[1] & 0xff) << 8, header[2] & 0xff);
+        int flags = header[3] & 0xff;
+        if ((flags & FEXTRA) != 0) {
+            readFully(in, header, 0, 2);
+            skipFully(in, (header[0] & 0xff) | (header[1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            skipString(in);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipString(in);
+        }
+        if ((flags & FHCRC) != 0) {
+            skipFully(in, 2);
+        }
+    }
+
+    private static void checkMagic(int magic, int method) throws ZipException {
+        if (magic != GZIP_MAGIC) {
+            throw new ZipException("不是Gzip格式的数据！");
+        }
+        if (method != DEFLATED) {
+            throw new ZipException("不支持的Gzip压缩方法：" + method);
+        }
+    }
+
+    private static void skipString(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != 0) {
+            if (b == -1) {
+                throw new EOFException("Gzip数据不完整！");
             }
-        } catch (IOException unused) {
-            unused.printStackTrace();
-            return input;
         }
     }
+
+    private static void skipFully(InputStream in, int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            if (in.read() == -1) {
+                throw new EOFException("Gzip数据不完整！");
+            }
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = in.read(b, off, len);
+            if (count == -1) {
+                throw new EOFException("Gzip数据不完整！");
+            }
+            off += count;
+            len -= count;
+        }
+    }
+
+    private static int readIntLE(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+
+    private static void writeIntLE(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * 协议头中的压缩算法id
+     */
+    @Override
+    public byte getId() {
+        return 2;
+    }
+
 }
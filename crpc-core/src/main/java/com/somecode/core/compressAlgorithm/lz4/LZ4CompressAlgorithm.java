@@ -0,0 +1,150 @@
+package com.somecode.core.compressAlgorithm.lz4;
+
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.core.compressAlgorithm.Configuration;
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ4压缩算法
+ * 压缩率低于Deflate，但是压缩和解压的速度快一个数量级，适合延迟敏感的小消息
+ * fastestInstance优先使用JNI实现，不可用时退化为纯Java实现，任何平台都能运行
+ * 格式：4字节原始长度 + LZ4块
+ * 原始长度来自对方，解压前先检查是否超过配置的上限，解压使用会检查边界的safeDecompressor
+ */
+public class LZ4CompressAlgorithm implements CompressAlgorithm {
+
+    /**
+     * 原始长度字段的长度
+     */
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+    /**
+     * 压缩器和解压器都是无状态、线程安全的
+     */
+    private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
+
+    private static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+
+    /**
+     * 解压后的最大长度
+     */
+    private final int maxUncompressSize = Configuration.getMaxUncompressSize();
+
+    @Override
+    public byte[] compress(byte[] input) {
+        byte[] output = new byte[LENGTH_FIELD_LENGTH + COMPRESSOR.maxCompressedLength(input.length)];
+        writeInt(output, input.length);
+        int length = COMPRESSOR.compress(input, 0, input.length, output, LENGTH_FIELD_LENGTH,
+                output.length - LENGTH_FIELD_LENGTH);
+        return Arrays.copyOf(output, LENGTH_FIELD_LENGTH + length);
+    }
+
+    @Override
+    public byte[] uncompress(byte[] input) {
+        try {
+            if (input.length < LENGTH_FIELD_LENGTH) {
+                throw new IOException("LZ4数据不完整！");
+            }
+            int length = checkLength((input[0] & 0xff) << 24 | (input[1] & 0xff) << 16
+                    | (input[2] & 0xff) << 8 | (input[3] & 0xff));
+            byte[] output = new byte[length];
+            int written;
+            try {
+                written = DECOMPRESSOR.decompress(input, LENGTH_FIELD_LENGTH, input.length - LENGTH_FIELD_LENGTH,
+                        output, 0, length);
+            } catch (LZ4Exception e) {
+                throw new IOException("LZ4解压失败：" + e.getMessage(), e);
+            }
+            checkWritten(written, length);
+            return output;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 直接在ByteBuf的内存上压缩，不经过byte数组
+     */
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = COMPRESSOR.maxCompressedLength(length);
+        out.ensureWritable(LENGTH_FIELD_LENGTH + maxLength);
+        out.writeInt(length);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxLength);
+        int written = COMPRESSOR.compress(src, src.position(), length, dest, dest.position(), maxLength);
+        out.writerIndex(out.writerIndex() + written);
+        in.skipBytes(length);
+    }
+
+    /**
+     * 直接在ByteBuf的内存上解压，不经过byte数组
+     */
+    @Override
+    public void uncompress(ByteBuf in, ByteBuf out) throws IOException {
+        if (in.readableBytes() < LENGTH_FIELD_LENGTH) {
+            throw new IOException("LZ4数据不完整！");
+        }
+        int length = checkLength(in.readInt());
+        int compressedLength = in.readableBytes();
+        out.ensureWritable(length);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), compressedLength);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), length);
+        int written;
+        try {
+            written = DECOMPRESSOR.decompress(src, src.position(), compressedLength, dest, dest.position(), length);
+        } catch (LZ4Exception e) {
+            throw new IOException("LZ4解压失败：" + e.getMessage(), e);
+        }
+        checkWritten(written, length);
+        out.writerIndex(out.writerIndex() + length);
+        in.skipBytes(compressedLength);
+    }
+
+    /**
+     * 原始长度不能是负数，也不能超过配置的上限，检查通过后才申请内存
+     */
+    private int checkLength(int length) throws IOException {
+        if (length < 0 || length > maxUncompressSize) {
+            throw new IOException("LZ4数据长度错误：" + length + "，上限为" + maxUncompressSize);
+        }
+        return length;
+    }
+
+    /**
+     * 解压出的长度必须与记录的原始长度一致
+     */
+    private static void checkWritten(int written, int length) throws IOException {
+        if (written != length) {
+            throw new IOException("LZ4数据长度不一致：记录为" + length + "，实际为" + written);
+        }
+    }
+
+    private static void writeInt(byte[] output, int value) {
+        output[0] = (byte) (value >>> 24);
+        output[1] = (byte) (value >>> 16);
+        output[2] = (byte) (value >>> 8);
+        output[3] = (byte) value;
+    }
+
+    /**
+     * 协议头中的压缩算法id
+     */
+    @Override
+    public byte getId() {
+        return 3;
+    }
+
+}
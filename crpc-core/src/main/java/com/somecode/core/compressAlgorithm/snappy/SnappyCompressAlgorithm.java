@@ -0,0 +1,125 @@
+package com.somecode.core.compressAlgorithm.snappy;
+
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.core.compressAlgorithm.Configuration;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * Snappy压缩算法
+ * 使用Netty自带的纯Java实现，不依赖本地库，直接在ByteBuf上读写
+ * Netty的实现用short保存哈希表中的位置，一块不能超过32K，所以按块压缩
+ * 格式：若干个块，每块为4字节压缩后长度 + Snappy原始块（开头是varint编码的原始长度）
+ */
+public class SnappyCompressAlgorithm implements CompressAlgorithm {
+
+    /**
+     * 每块原始数据的最大长度
+     */
+    private static final int MAX_CHUNK_LENGTH = 32767;
+
+    /**
+     * 块长度字段的长度
+     */
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    /**
+     * 解压后的最大长度
+     */
+    private final int maxUncompressSize = Configuration.getMaxUncompressSize();
+
+    @Override
+    public byte[] compress(byte[] input) {
+        ByteBuf in = Unpooled.wrappedBuffer(input);
+        ByteBuf out = Unpooled.buffer(maxCompressedLength(input.length));
+        compress(in, out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public byte[] uncompress(byte[] input) {
+        ByteBuf in = Unpooled.wrappedBuffer(input);
+        ByteBuf out = Unpooled.buffer(Math.min(input.length * 2, maxUncompressSize));
+        uncompress(in, out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    /**
+     * 直接在ByteBuf上按块压缩，Snappy对象带有解码状态，每块新建
+     * 每块都是从0开始的切片，Netty的实现在读指针不为0时会写错字面量
+     */
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        out.ensureWritable(maxCompressedLength(in.readableBytes()));
+        while (in.isReadable()) {
+            ByteBuf chunk = in.readSlice(Math.min(in.readableBytes(), MAX_CHUNK_LENGTH));
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            new Snappy().encode(chunk, out, chunk.readableBytes());
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - LENGTH_FIELD_LENGTH);
+        }
+    }
+
+    /**
+     * 直接在ByteBuf上按块解压
+     * Netty的实现遇到不完整的数据会直接返回，所以按每块开头的原始长度校验
+     * Netty的实现会按照原始长度直接扩容，原始长度来自对方，所以先和剩余的上限比较，通过后才解压
+     */
+    @Override
+    public void uncompress(ByteBuf in, ByteBuf out) {
+        int begin = out.writerIndex();
+        while (in.isReadable()) {
+            if (in.readableBytes() < LENGTH_FIELD_LENGTH) {
+                throw new IllegalArgumentException("Snappy数据不完整！");
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.readableBytes()) {
+                throw new IllegalArgumentException("Snappy数据不完整！");
+            }
+            ByteBuf chunk = in.readSlice(length);
+            int expected = peekLength(chunk);
+            int start = out.writerIndex();
+            if (expected < 0 || expected > maxUncompressSize - (start - begin)) {
+                throw new IllegalArgumentException("Snappy数据长度错误：" + expected + "，上限为" + maxUncompressSize);
+            }
+            new Snappy().decode(chunk, out);
+            if (out.writerIndex() - start != expected) {
+                throw new IllegalArgumentException("Snappy数据不完整！");
+            }
+        }
+    }
+
+    /**
+     * 读取开头varint编码的原始长度，不移动读指针
+     */
+    private static int peekLength(ByteBuf in) {
+        int length = 0;
+        for (int i = 0; i < 5 && i < in.readableBytes(); i++) {
+            int b = in.getUnsignedByte(in.readerIndex() + i);
+            length |= (b & 0x7f) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IllegalArgumentException("Snappy数据长度错误！");
+    }
+
+    /**
+     * 压缩后长度的上限，每块与Snappy的MaxCompressedLength一致，再加上块长度字段
+     */
+    private static int maxCompressedLength(int length) {
+        int chunks = (length + MAX_CHUNK_LENGTH - 1) / MAX_CHUNK_LENGTH;
+        return chunks * (LENGTH_FIELD_LENGTH + 32) + length + length / 6;
+    }
+
+    /**
+     * 协议头中的压缩算法id
+     */
+    @Override
+    public byte getId() {
+        return 4;
+    }
+
+}
@@ -6,6 +6,9 @@ import com.somecode.common.spi.core.Serialize;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Hessian序列化方式
@@ -17,13 +20,9 @@ public class HessianSerialize implements Serialize {
      */
     @Override
     public byte[] serialize(Object object) {
-        if (object == null) {
-            throw new NullPointerException("序列化的对象不能为空！");
-        }
         ByteArrayOutputStream os = new ByteArrayOutputStream();
-        HessianOutput hessianOutput = new HessianOutput(os);
         try {
-            hessianOutput.writeObject(object);
+            serialize(object, os);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -38,15 +37,42 @@ public class HessianSerialize implements Serialize {
         if (bytes == null){
             throw new NullPointerException();
         }
-        ByteArrayInputStream is = new ByteArrayInputStream(bytes);
-        HessianInput hi = new HessianInput(is);
         Object obj = null;
         try {
-            obj = hi.readObject();
+            obj = deserialize(new ByteArrayInputStream(bytes));
         }catch (Exception e) {
             e.printStackTrace();
         }
         return obj;
     }
 
+    /**
+     * 直接写入输出流，不经过中间的byte数组
+     */
+    @Override
+    public void serialize(Object object, OutputStream out) throws IOException {
+        if (object == null) {
+            throw new NullPointerException("序列化的对象不能为空！");
+        }
+        HessianOutput hessianOutput = new HessianOutput(out);
+        hessianOutput.writeObject(object);
+        hessianOutput.flush();
+    }
+
+    /**
+     * 直接从输入流读取
+     */
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        return new HessianInput(in).readObject();
+    }
+
+    /**
+     * 协议头中的序列化方式id
+     */
+    @Override
+    public byte getId() {
+        return 1;
+    }
+
 }
@@ -0,0 +1,108 @@
+package com.somecode.core.serialize.hessian2;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+import com.somecode.common.spi.core.Serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Hessian2序列化方式
+ * 相比Hessian1编码更紧凑，重复出现的对象和类定义只写引用
+ * 所有线程共用一个SerializerFactory，每个类的序列化器只创建一次
+ * Hessian2Output、Hessian2Input连同内部缓冲区按线程复用，每次使用前重新init
+ */
+public class Hessian2Serialize implements Serialize {
+
+    /**
+     * 缓存每个类的序列化器，线程安全
+     */
+    private static final SerializerFactory SERIALIZER_FACTORY = new SerializerFactory();
+
+    private static final ThreadLocal<Hessian2Output> OUTPUT = ThreadLocal.withInitial(() -> {
+        Hessian2Output output = new Hessian2Output();
+        output.setSerializerFactory(SERIALIZER_FACTORY);
+        return output;
+    });
+
+    private static final ThreadLocal<Hessian2Input> INPUT = ThreadLocal.withInitial(() -> {
+        Hessian2Input input = new Hessian2Input();
+        input.setSerializerFactory(SERIALIZER_FACTORY);
+        return input;
+    });
+
+    /**
+     * 序列化
+     */
+    @Override
+    public byte[] serialize(Object object) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            serialize(object, os);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Hessian2序列化失败！", e);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * 反序列化
+     */
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("反序列化的数据不能为空！");
+        }
+        try {
+            return deserialize(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Hessian2反序列化失败！", e);
+        }
+    }
+
+    /**
+     * 直接写入输出流，不关闭流
+     */
+    @Override
+    public void serialize(Object object, OutputStream out) throws IOException {
+        Hessian2Output output = OUTPUT.get();
+        // init会清空上一次留下的引用表和缓冲区
+        output.init(out);
+        try {
+            output.writeObject(object);
+            output.flush();
+        } finally {
+            // 不再持有流
+            output.init(null);
+        }
+    }
+
+    /**
+     * 直接从输入流读取，不关闭流
+     */
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        Hessian2Input input = INPUT.get();
+        input.init(in);
+        try {
+            return input.readObject();
+        } finally {
+            input.init(null);
+        }
+    }
+
+    /**
+     * 协议头中的序列化方式id
+     */
+    @Override
+    public byte getId() {
+        return 2;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.somecode.core.serialize.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Arrays.asList返回的列表不支持add，默认的集合序列化器无法反序列化
+ * 客户端的参数列表就是这种类型，按照数组读写
+ */
+public class ArraysAsListSerializer extends Serializer<List<?>> {
+
+    @Override
+    public void write(Kryo kryo, Output output, List<?> list) {
+        output.writeVarInt(list.size(), true);
+        for (Object element : list) {
+            kryo.writeClassAndObject(output, element);
+        }
+    }
+
+    @Override
+    public List<?> read(Kryo kryo, Input input, Class<? extends List<?>> type) {
+        Object[] elements = new Object[input.readVarInt(true)];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = kryo.readClassAndObject(input);
+        }
+        return Arrays.asList(elements);
+    }
+
+}
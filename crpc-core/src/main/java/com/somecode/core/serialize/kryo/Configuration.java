@@ -0,0 +1,66 @@
+package com.somecode.core.serialize.kryo;
+
+import com.somecode.core.configuration.InitCoreConfiguration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 获取配置文件中的参数
+ */
+public class Configuration {
+
+    /**
+     * 用户注册的类的id不能小于这个值，更小的id留给内置的注册
+     */
+    public static final int MIN_USER_ID = 100;
+
+    /**
+     * 是否只允许序列化注册过的类，默认不要求
+     */
+    public static boolean getRegistrationRequired() {
+        Map kryo = getKryoConfigure();
+        if (kryo == null || kryo.get("registrationRequired") == null) {
+            return false;
+        }
+        return Boolean.parseBoolean(kryo.get("registrationRequired").toString());
+    }
+
+    /**
+     * 用户注册的类，全类名 -> id
+     * 客户端和服务端必须一致，所以id需要显式指定，不依赖注册的顺序
+     */
+    public static Map<String, Integer> getRegistrations() {
+        Map kryo = getKryoConfigure();
+        if (kryo == null || kryo.get("registrations") == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> registrations = new LinkedHashMap<>();
+        try {
+            Map map = (Map) kryo.get("registrations");
+            for (Object key : map.keySet()) {
+                int id = Integer.parseInt(map.get(key).toString());
+                if (id < MIN_USER_ID) {
+                    throw new IllegalArgumentException(key + "的注册id不能小于" + MIN_USER_ID + "！");
+                }
+                registrations.put(key.toString(), id);
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Kryo注册表格式错误！");
+        }
+        return registrations;
+    }
+
+    private static Map getKryoConfigure() {
+        Map serialize = (Map) InitCoreConfiguration.requireCoreConfigure("Serialize");
+        if (serialize == null) {
+            return null;
+        }
+        return (Map) serialize.get("KryoSerialize");
+    }
+
+}
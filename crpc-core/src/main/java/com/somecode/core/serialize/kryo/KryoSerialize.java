@@ -3,30 +3,207 @@ package com.somecode.core.serialize.kryo;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import com.somecode.common.entity.NetworkNode;
+import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.entity.ResponseMessage;
 import com.somecode.common.spi.core.Serialize;
+import org.objenesis.strategy.StdInstantiatorStrategy;
 
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
 
 /**
  * Kryo序列化
+ * Kryo、Output、Input的创建成本远高于序列化一个小消息，所以全部池化复用
+ * 注册过的类只写一个很小的id，不再写全类名
  */
 public class KryoSerialize implements Serialize {
 
+    /**
+     * Output、Input自己的缓冲区大小，写满后刷到流中
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * 池的最大容量，超过的对象直接丢弃
+     */
+    private static final int POOL_CAPACITY = 64;
+
+    /**
+     * 内置注册的起始id，Kryo自己已经占用了基本类型和String的id
+     */
+    private static final int BUILT_IN_ID = 20;
+
+    /**
+     * 内置注册的类，id按照顺序从BUILT_IN_ID开始，只能在末尾追加
+     */
+    private static final Class<?>[] BUILT_IN = {
+            RequestMessage.class,
+            ResponseMessage.class,
+            NetworkNode.class,
+            Object[].class,
+            String[].class,
+            Class[].class,
+            byte[].class,
+            int[].class,
+            long[].class,
+            ArrayList.class,
+            LinkedList.class,
+            HashMap.class,
+            LinkedHashMap.class,
+            TreeMap.class,
+            HashSet.class,
+            LinkedHashSet.class,
+            TreeSet.class,
+            Date.class,
+            BigDecimal.class,
+            BigInteger.class,
+            Collections.emptyList().getClass(),
+            Collections.emptyMap().getClass(),
+            Collections.emptySet().getClass(),
+            Collections.singletonList(null).getClass(),
+            Arrays.asList().getClass()
+    };
+
+    /**
+     * 是否只允许序列化注册过的类
+     */
+    private final boolean registrationRequired = Configuration.getRegistrationRequired();
+
+    /**
+     * 用户在配置文件中注册的类
+     */
+    private final Map<Class<?>, Integer> registrations = loadRegistrations();
+
+    private final Pool<Kryo> kryoPool = new Pool<Kryo>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Kryo create() {
+            return newKryo();
+        }
+    };
+
+    private final Pool<Output> outputPool = new Pool<Output>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Output create() {
+            // 不设上限，自己扩容
+            return new Output(BUFFER_SIZE, -1);
+        }
+    };
+
+    private final Pool<Input> inputPool = new Pool<Input>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Input create() {
+            return new Input(BUFFER_SIZE);
+        }
+    };
+
     @Override
     public byte[] serialize(Object object) {
-        Kryo kryo = new Kryo();
-        kryo.setRegistrationRequired(false);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        Output output = new Output(bos);
-        kryo.writeClassAndObject(output, object);
-        output.flush();
-        return bos.toByteArray();
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            kryo.writeClassAndObject(output, object);
+            return output.toBytes();
+        } finally {
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
     }
 
     @Override
     public Object deserialize(byte[] bytes) {
+        Kryo kryo = kryoPool.obtain();
+        try {
+            // 直接包装数组，没有额外的缓冲区，不需要池化
+            return kryo.readClassAndObject(new Input(bytes));
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 直接写入输出流，不经过中间的byte数组
+     */
+    @Override
+    public void serialize(Object object, OutputStream out) {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.setOutputStream(out);
+            kryo.writeClassAndObject(output, object);
+            output.flush();
+        } finally {
+            // 放回池中之前断开与流的关联
+            output.setOutputStream(null);
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 直接从输入流读取
+     */
+    @Override
+    public Object deserialize(InputStream in) {
+        Kryo kryo = kryoPool.obtain();
+        Input input = inputPool.obtain();
+        try {
+            input.setInputStream(in);
+            return kryo.readClassAndObject(input);
+        } finally {
+            input.setInputStream(null);
+            inputPool.free(input);
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 创建Kryo，注册的顺序和id在客户端和服务端都是一致的
+     */
+    private Kryo newKryo() {
         Kryo kryo = new Kryo();
-        kryo.setRegistrationRequired(false);
-        return kryo.readClassAndObject(new Input(bytes));
+        kryo.setRegistrationRequired(registrationRequired);
+        // 优先使用无参构造，没有无参构造的类使用objenesis创建
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        // 需要在注册之前设置，注册时才会选用这个序列化器
+        kryo.addDefaultSerializer(Arrays.asList().getClass(), ArraysAsListSerializer.class);
+        for (int i = 0; i < BUILT_IN.length; i++) {
+            kryo.register(BUILT_IN[i], BUILT_IN_ID + i);
+        }
+        for (Map.Entry<Class<?>, Integer> entry : registrations.entrySet()) {
+            kryo.register(entry.getKey(), entry.getValue());
+        }
+        return kryo;
     }
+
+    /**
+     * 加载配置文件中注册的类，当前进程中不存在的类跳过，id是显式指定的，不会影响其他类
+     */
+    private static Map<Class<?>, Integer> loadRegistrations() {
+        Map<Class<?>, Integer> registrations = new LinkedHashMap<>();
+        ClassLoader classLoader = KryoSerialize.class.getClassLoader();
+        for (Map.Entry<String, Integer> entry : Configuration.getRegistrations().entrySet()) {
+            try {
+                registrations.put(Class.forName(entry.getKey(), false, classLoader), entry.getValue());
+            } catch (ClassNotFoundException e) {
+                System.out.println("Kryo注册的类" + entry.getKey() + "不存在，已跳过！");
+            }
+        }
+        return registrations;
+    }
+
+    /**
+     * 协议头中的序列化方式id
+     */
+    @Override
+    public byte getId() {
+        return 3;
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.somecode.core.serialize.protostuff;
+
+import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.spi.core.Serialize;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 基于Protostuff运行时Schema的ProtoBuf编码
+ * 实体类不需要.proto文件，Schema按类生成一次后由RuntimeSchema缓存
+ * 数据包的第一个字节标记顶层对象的类型：RequestMessage使用专用Schema，其他对象包装后写入实际类型
+ */
+public class ProtostuffSerialize implements Serialize {
+
+    private static final int TYPE_REQUEST = 1;
+
+    private static final int TYPE_VALUE = 2;
+
+    private static final Schema<RequestMessage> REQUEST_SCHEMA = new RequestMessageSchema();
+
+    private static final Schema<ValueHolder> HOLDER_SCHEMA = RuntimeSchema.getSchema(ValueHolder.class);
+
+    /**
+     * 编码用的缓冲区按线程复用，每次使用后clear
+     */
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(512));
+
+    @Override
+    public byte[] serialize(Object object) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            serialize(object, os);
+        } catch (IOException e) {
+            throw new UncheckedIOException("ProtoBuf序列化失败！", e);
+        }
+        return os.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        try {
+            return deserialize(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("ProtoBuf反序列化失败！", e);
+        }
+    }
+
+    @Override
+    public void serialize(Object object, OutputStream out) throws IOException {
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            if (object instanceof RequestMessage) {
+                out.write(TYPE_REQUEST);
+                ProtostuffIOUtil.writeTo(out, (RequestMessage) object, REQUEST_SCHEMA, buffer);
+            } else {
+                out.write(TYPE_VALUE);
+                ProtostuffIOUtil.writeTo(out, new ValueHolder(object), HOLDER_SCHEMA, buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        int type = in.read();
+        switch (type) {
+            case TYPE_REQUEST:
+                RequestMessage requestMessage = REQUEST_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeFrom(in, requestMessage, REQUEST_SCHEMA);
+                return requestMessage;
+            case TYPE_VALUE:
+                ValueHolder holder = HOLDER_SCHEMA.newMessage();
+                ProtostuffIOUtil.mergeFrom(in, holder, HOLDER_SCHEMA);
+                return holder.value;
+            default:
+                throw new IOException("未知的ProtoBuf数据类型：" + type);
+        }
+    }
+
+    /**
+     * 协议头中的序列化方式id
+     */
+    @Override
+    public byte getId() {
+        return 4;
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.somecode.core.serialize.protostuff;
+
+import com.somecode.common.entity.RequestMessage;
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RequestMessage的专用Schema
+ * 参数类型已经在paramObjectTypeLit中写过一次，参数的实际类型与声明类型一致时，
+ * 直接按照该类型的Schema写入字段，不再为每个参数写全类名
+ * 字段顺序：方法id、类名、方法名、参数类型，最后是参数，读取参数时参数类型已经读完
+ * 按方法id调用时没有参数类型，参数都写入实际类型
+ */
+public class RequestMessageSchema implements Schema<RequestMessage> {
+
+    private static final int CLASS_NAME = 1;
+
+    private static final int METHOD_NAME = 2;
+
+    private static final int PARAM_TYPE = 3;
+
+    /**
+     * 按声明类型的Schema写入的参数
+     */
+    private static final int TYPED_PARAM = 4;
+
+    /**
+     * 声明类型无法直接使用的参数，包装后写入实际类型
+     */
+    private static final int DYNAMIC_PARAM = 5;
+
+    private static final int METHOD_ID = 6;
+
+    private static final Schema<ValueHolder> HOLDER_SCHEMA = RuntimeSchema.getSchema(ValueHolder.class);
+
+    /**
+     * 类型名 -> 可以直接使用Schema的类，不能直接使用的记为Object.class
+     */
+    private static final Map<String, Class<?>> TYPE_CACHE = new ConcurrentHashMap<>();
+
+    @Override
+    public String getFieldName(int number) {
+        switch (number) {
+            case CLASS_NAME:
+                return "className";
+            case METHOD_NAME:
+                return "methodName";
+            case PARAM_TYPE:
+                return "paramObjectTypeLit";
+            case TYPED_PARAM:
+                return "typedParam";
+            case DYNAMIC_PARAM:
+                return "dynamicParam";
+            case METHOD_ID:
+                return "methodId";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public int getFieldNumber(String name) {
+        switch (name) {
+            case "className":
+                return CLASS_NAME;
+            case "methodName":
+                return METHOD_NAME;
+            case "paramObjectTypeLit":
+                return PARAM_TYPE;
+            case "typedParam":
+                return TYPED_PARAM;
+            case "dynamicParam":
+                return DYNAMIC_PARAM;
+            case "methodId":
+                return METHOD_ID;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public boolean isInitialized(RequestMessage message) {
+        return true;
+    }
+
+    @Override
+    public RequestMessage newMessage() {
+        return new RequestMessage();
+    }
+
+    @Override
+    public String messageName() {
+        return RequestMessage.class.getSimpleName();
+    }
+
+    @Override
+    public String messageFullName() {
+        return RequestMessage.class.getName();
+    }
+
+    @Override
+    public Class<? super RequestMessage> typeClass() {
+        return RequestMessage.class;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(Output output, RequestMessage message) throws IOException {
+        if (message.getMethodId() != 0) {
+            output.writeInt32(METHOD_ID, message.getMethodId(), false);
+        }
+        if (message.getClassName() != null) {
+            output.writeString(CLASS_NAME, message.getClassName(), false);
+        }
+        if (message.getMethodName() != null) {
+            output.writeString(METHOD_NAME, message.getMethodName(), false);
+        }
+        List<String> types = message.getParamObjectTypeLit();
+        if (types != null) {
+            for (String type : types) {
+                output.writeString(PARAM_TYPE, type, true);
+            }
+        }
+        List<Object> params = message.getParamObjectList();
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            Class<?> type = types != null && i < types.size() ? resolve(types.get(i)) : Object.class;
+            if (param != null && param.getClass() == type) {
+                output.writeObject(TYPED_PARAM, param, (Schema<Object>) RuntimeSchema.getSchema(type), true);
+            } else {
+                output.writeObject(DYNAMIC_PARAM, new ValueHolder(param), HOLDER_SCHEMA, true);
+            }
+        }
+    }
+
+    @Override
+    public void mergeFrom(Input input, RequestMessage message) throws IOException {
+        List<String> types = new ArrayList<>();
+        List<Object> params = null;
+        for (int number = input.readFieldNumber(this); number != 0; number = input.readFieldNumber(this)) {
+            switch (number) {
+                case METHOD_ID:
+                    message.setMethodId(input.readInt32());
+                    break;
+                case CLASS_NAME:
+                    message.setClassName(input.readString());
+                    break;
+                case METHOD_NAME:
+                    message.setMethodName(input.readString());
+                    break;
+                case PARAM_TYPE:
+                    types.add(input.readString());
+                    break;
+                case TYPED_PARAM:
+                    if (params == null) {
+                        params = new ArrayList<>(types.size());
+                    }
+                    params.add(input.mergeObject(null, RuntimeSchema.getSchema(resolve(types.get(params.size())))));
+                    break;
+                case DYNAMIC_PARAM:
+                    if (params == null) {
+                        params = new ArrayList<>(types.size());
+                    }
+                    params.add(input.mergeObject(null, HOLDER_SCHEMA).value);
+                    break;
+                default:
+                    input.handleUnknownField(number, this);
+            }
+        }
+        message.setParamObjectTypeLit(types);
+        message.setParamObjectList(params);
+    }
+
+    /**
+     * 根据类型名得到可以直接使用Schema的类
+     * 基本类型、JDK自带的类型、数组、枚举、接口和抽象类都需要写入实际类型，返回Object.class
+     */
+    private static Class<?> resolve(String typeName) {
+        return TYPE_CACHE.computeIfAbsent(typeName, name -> {
+            try {
+                Class<?> clazz = Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+                if (clazz.isArray() || clazz.isEnum() || clazz.isInterface()
+                        || Modifier.isAbstract(clazz.getModifiers()) || name.startsWith("java.")) {
+                    return Object.class;
+                }
+                return clazz;
+            } catch (ClassNotFoundException e) {
+                // 基本类型或者当前进程中没有的类
+                return Object.class;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.somecode.core.serialize.protostuff;
+
+/**
+ * 类型事先未知的值
+ * 字段声明为Object，运行时Schema会写入实际类型，可以承载null、String、集合等不能直接作为消息的值
+ */
+class ValueHolder {
+
+    Object value;
+
+    ValueHolder() {
+    }
+
+    ValueHolder(Object value) {
+        this.value = value;
+    }
+
+}
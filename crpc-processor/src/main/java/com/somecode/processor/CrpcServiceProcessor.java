@@ -0,0 +1,489 @@
+package com.somecode.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 为标注了@CrpcService的接口生成代码
+ * 接口名Stub：客户端存根，实现接口，每个方法把参数交给StubInvoker按下标发送，不需要动态代理
+ * 接口名Dispatcher：服务端分发器，按下标用switch直接调用实现类的方法，不需要反射
+ * 分发器登记在META-INF/services/com.somecode.common.stub.ServiceDispatcher中，运行时由ServiceDispatchers加载
+ * 只依赖注解的名字，处理器本身不依赖crpc-common
+ */
+public class CrpcServiceProcessor extends AbstractProcessor {
+
+    /**
+     * 处理的注解
+     */
+    private static final String CRPC_SERVICE = "com.somecode.common.stub.CrpcService";
+
+    /**
+     * 生成代码使用的类
+     */
+    private static final String SERVICE_DISPATCHER = "com.somecode.common.stub.ServiceDispatcher";
+
+    private static final String METHOD_DESCRIPTOR = "com.somecode.common.stub.MethodDescriptor";
+
+    private static final String STUB_INVOKER = "com.somecode.common.stub.StubInvoker";
+
+    /**
+     * 异步方法的返回值类型
+     */
+    private static final Set<String> ASYNC_TYPES = new LinkedHashSet<>(Arrays.asList(
+            "java.util.concurrent.CompletableFuture",
+            "java.util.concurrent.CompletionStage",
+            "java.util.concurrent.Future"));
+
+    private Elements elements;
+
+    private Types types;
+
+    private Filer filer;
+
+    private Messager messager;
+
+    /**
+     * 本次编译生成的分发器，最后一轮写入登记文件
+     */
+    private final Set<String> dispatchers = new LinkedHashSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(CRPC_SERVICE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        TypeElement annotation = elements.getTypeElement(CRPC_SERVICE);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@CrpcService只能标注在接口上", element);
+                continue;
+            }
+            TypeElement service = (TypeElement) element;
+            if (!service.getTypeParameters().isEmpty()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@CrpcService不支持带类型参数的接口", element);
+                continue;
+            }
+            try {
+                generate(service);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "生成代码失败：" + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成存根和分发器
+     */
+    private void generate(TypeElement service) throws IOException {
+        String packageName = elements.getPackageOf(service).getQualifiedName().toString();
+        // 嵌套接口的生成类名用“_”连接外部类名
+        String binaryName = elements.getBinaryName(service).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_');
+        String stubName = simpleName + "Stub";
+        String dispatcherName = simpleName + "Dispatcher";
+        String serviceName = service.getQualifiedName().toString();
+        List<ServiceMethod> methods = collectMethods(service);
+        write(packageName, stubName, generateStub(packageName, stubName, serviceName, methods), service);
+        write(packageName, dispatcherName,
+                generateDispatcher(packageName, dispatcherName, stubName, serviceName, methods), service);
+        dispatchers.add(packageName.isEmpty() ? dispatcherName : packageName + "." + dispatcherName);
+    }
+
+    /**
+     * 接口中需要远程调用的方法，包括继承的方法，不包括静态方法和Object的方法
+     */
+    private List<ServiceMethod> collectMethods(TypeElement service) {
+        DeclaredType serviceType = (DeclaredType) service.asType();
+        List<ServiceMethod> methods = new ArrayList<>();
+        for (Element member : elements.getAllMembers(service)) {
+            if (member.getKind() != ElementKind.METHOD || member.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) member;
+            if (isObjectMethod(method)) {
+                continue;
+            }
+            ExecutableType methodType = (ExecutableType) types.asMemberOf(serviceType, method);
+            methods.add(new ServiceMethod(method, methodType));
+        }
+        return methods;
+    }
+
+    /**
+     * 是否是Object中的方法，包括接口中重新声明的equals、hashCode、toString
+     */
+    private boolean isObjectMethod(ExecutableElement method) {
+        TypeElement object = elements.getTypeElement(Object.class.getName());
+        if (method.getEnclosingElement().equals(object)) {
+            return true;
+        }
+        for (ExecutableElement objectMethod : ElementFilter.methodsIn(object.getEnclosedElements())) {
+            if (objectMethod.getModifiers().contains(Modifier.PRIVATE)
+                    || !objectMethod.getSimpleName().equals(method.getSimpleName())
+                    || objectMethod.getParameters().size() != method.getParameters().size()) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; i < method.getParameters().size(); i++) {
+                same &= types.isSameType(types.erasure(method.getParameters().get(i).asType()),
+                        objectMethod.getParameters().get(i).asType());
+            }
+            if (same) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 客户端存根
+     */
+    private String generateStub(String packageName, String stubName, String serviceName, List<ServiceMethod> methods) {
+        StringBuilder code = new StringBuilder();
+        appendHeader(code, packageName);
+        code.append("/**\n")
+                .append(" * ").append(serviceName).append("的客户端存根，由CrpcServiceProcessor生成，不要修改\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"unchecked\")\n")
+                .append("public final class ").append(stubName).append(" implements ").append(serviceName).append(" {\n\n")
+                .append("    private final ").append(STUB_INVOKER).append(" invoker;\n\n")
+                .append("    public ").append(stubName).append("(").append(STUB_INVOKER).append(" invoker) {\n")
+                .append("        this.invoker = invoker;\n")
+                .append("    }\n");
+        for (int index = 0; index < methods.size(); index++) {
+            ServiceMethod method = methods.get(index);
+            List<? extends TypeMirror> paramTypes = method.type.getParameterTypes();
+            TypeMirror returnType = method.type.getReturnType();
+            code.append("\n    @Override\n    public ");
+            appendTypeParameters(code, method.element);
+            code.append(returnType).append(" ").append(method.element.getSimpleName()).append("(");
+            for (int i = 0; i < paramTypes.size(); i++) {
+                if (i > 0) {
+                    code.append(", ");
+                }
+                if (i == paramTypes.size() - 1 && method.element.isVarArgs()) {
+                    code.append(((ArrayType) paramTypes.get(i)).getComponentType()).append("...");
+                } else {
+                    code.append(paramTypes.get(i));
+                }
+                code.append(" arg").append(i);
+            }
+            code.append(") {\n        ");
+            if (returnType.getKind() != TypeKind.VOID) {
+                code.append("return (").append(returnType.getKind().isPrimitive()
+                        ? types.boxedClass(types.getPrimitiveType(returnType.getKind())).getQualifiedName()
+                        : returnType).append(") ");
+            }
+            code.append("invoker.invoke(").append(index).append(", ");
+            if (paramTypes.isEmpty()) {
+                code.append("null");
+            } else {
+                code.append("new Object[]{");
+                for (int i = 0; i < paramTypes.size(); i++) {
+                    code.append(i > 0 ? ", arg" : "arg").append(i);
+                }
+                code.append("}");
+            }
+            code.append(");\n    }\n");
+        }
+        code.append("\n}\n");
+        return code.toString();
+    }
+
+    /**
+     * 服务端分发器
+     */
+    private String generateDispatcher(String packageName, String dispatcherName, String stubName, String serviceName,
+                                      List<ServiceMethod> methods) {
+        StringBuilder code = new StringBuilder();
+        appendHeader(code, packageName);
+        code.append("/**\n")
+                .append(" * ").append(serviceName).append("的分发器，由CrpcServiceProcessor生成，不要修改\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"unchecked\")\n")
+                .append("public final class ").append(dispatcherName).append(" implements ")
+                .append(SERVICE_DISPATCHER).append("<").append(serviceName).append("> {\n\n")
+                .append("    private static final ").append(METHOD_DESCRIPTOR).append("[] METHODS = {\n");
+        for (ServiceMethod method : methods) {
+            code.append("            new ").append(METHOD_DESCRIPTOR).append("(\"").append(method.element.getSimpleName())
+                    .append("\", ").append(isAsync(method.type.getReturnType()));
+            for (TypeMirror paramType : method.type.getParameterTypes()) {
+                code.append(", \"").append(className(paramType)).append("\"");
+            }
+            code.append("),\n");
+        }
+        code.append("    };\n\n")
+                .append("    @Override\n")
+                .append("    public Class<").append(serviceName).append("> getServiceType() {\n")
+                .append("        return ").append(serviceName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public ").append(METHOD_DESCRIPTOR).append("[] getMethods() {\n")
+                .append("        return METHODS.clone();\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public ").append(serviceName).append(" newStub(").append(STUB_INVOKER).append(" invoker) {\n")
+                .append("        return new ").append(stubName).append("(invoker);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Object dispatch(").append(serviceName)
+                .append(" target, int index, Object[] args) throws Throwable {\n")
+                .append("        switch (index) {\n");
+        for (int index = 0; index < methods.size(); index++) {
+            ServiceMethod method = methods.get(index);
+            List<? extends TypeMirror> paramTypes = method.type.getParameterTypes();
+            boolean isVoid = method.type.getReturnType().getKind() == TypeKind.VOID;
+            code.append("            case ").append(index).append(":\n                ")
+                    .append(isVoid ? "" : "return ").append("target.").append(method.element.getSimpleName()).append("(");
+            for (int i = 0; i < paramTypes.size(); i++) {
+                if (i > 0) {
+                    code.append(", ");
+                }
+                TypeMirror paramType = types.erasure(paramTypes.get(i));
+                code.append("(").append(paramType.getKind().isPrimitive()
+                        ? types.boxedClass((PrimitiveType) paramType).getQualifiedName()
+                        : paramType).append(") args[").append(i).append("]");
+            }
+            code.append(");\n");
+            if (isVoid) {
+                code.append("                return null;\n");
+            }
+        }
+        code.append("            default:\n")
+                .append("                throw new IllegalArgumentException(\"").append(serviceName)
+                .append("没有下标为\" + index + \"的方法！\");\n")
+                .append("        }\n")
+                .append("    }\n\n")
+                .append("}\n");
+        return code.toString();
+    }
+
+    private void appendHeader(StringBuilder code, String packageName) {
+        if (!packageName.isEmpty()) {
+            code.append("package ").append(packageName).append(";\n\n");
+        }
+    }
+
+    /**
+     * 方法的类型参数，比如<T extends java.lang.Number>
+     */
+    private void appendTypeParameters(StringBuilder code, ExecutableElement method) {
+        List<? extends TypeParameterElement> typeParameters = method.getTypeParameters();
+        if (typeParameters.isEmpty()) {
+            return;
+        }
+        code.append("<");
+        for (int i = 0; i < typeParameters.size(); i++) {
+            TypeParameterElement typeParameter = typeParameters.get(i);
+            code.append(i > 0 ? ", " : "").append(typeParameter.getSimpleName());
+            List<? extends TypeMirror> bounds = typeParameter.getBounds();
+            for (int j = 0; j < bounds.size(); j++) {
+                if (j == 0 && bounds.size() == 1 && bounds.get(0).toString().equals(Object.class.getName())) {
+                    break;
+                }
+                code.append(j == 0 ? " extends " : " & ").append(bounds.get(j));
+            }
+        }
+        code.append("> ");
+    }
+
+    /**
+     * 返回值为future的方法是异步方法
+     */
+    private boolean isAsync(TypeMirror returnType) {
+        TypeMirror erased = types.erasure(returnType);
+        return erased.getKind() == TypeKind.DECLARED
+                && ASYNC_TYPES.contains(((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString());
+    }
+
+    /**
+     * 类型擦除后的类名，与运行时Class.getName()一致
+     */
+    private String className(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        switch (erased.getKind()) {
+            case ARRAY:
+                return descriptor(erased).replace('/', '.');
+            case DECLARED:
+                return elements.getBinaryName((TypeElement) ((DeclaredType) erased).asElement()).toString();
+            default:
+                return erased.toString();
+        }
+    }
+
+    /**
+     * 数组的类名使用字段描述符的形式，比如[I、[Ljava.lang.String;
+     */
+    private String descriptor(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        switch (erased.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case SHORT:
+                return "S";
+            case CHAR:
+                return "C";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case ARRAY:
+                return "[" + descriptor(((ArrayType) erased).getComponentType());
+            default:
+                return "L" + className(erased) + ";";
+        }
+    }
+
+    private void write(String packageName, String className, String code, TypeElement origin) throws IOException {
+        String name = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = filer.createSourceFile(name, origin).openWriter()) {
+            writer.write(escapeNonAscii(code));
+        }
+    }
+
+    /**
+     * 非ASCII字符写成unicode转义，生成的文件按照编译器的编码写出，不是UTF-8时中文也不会乱码
+     */
+    private String escapeNonAscii(String code) {
+        StringBuilder escaped = new StringBuilder(code.length());
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < 128) {
+                escaped.append(c);
+            } else {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * 写入分发器的登记文件
+     */
+    private void writeServiceFile() {
+        if (dispatchers.isEmpty()) {
+            return;
+        }
+        String path = "META-INF/services/" + SERVICE_DISPATCHER;
+        // 增量编译时只处理了修改过的接口，需要保留之前登记的分发器
+        Set<String> merged = new LinkedHashSet<>(readServiceFile(path));
+        merged.addAll(dispatchers);
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String dispatcher : merged) {
+                    writer.write(dispatcher);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "写入" + SERVICE_DISPATCHER + "登记文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取输出目录中已有的登记文件，不存在时返回空列表，忽略空行和注释
+     */
+    private List<String> readServiceFile(String path) {
+        List<String> entries = new ArrayList<>();
+        try {
+            FileObject file = filer.getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String entry = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!entry.isEmpty()) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 第一次编译，还没有登记文件
+        }
+        return entries;
+    }
+
+    /**
+     * 接口中的一个方法，type是按照接口解析过类型参数的方法类型
+     */
+    private static class ServiceMethod {
+
+        private final ExecutableElement element;
+
+        private final ExecutableType type;
+
+        private ServiceMethod(ExecutableElement element, ExecutableType type) {
+            this.element = element;
+            this.type = type;
+        }
+
+    }
+
+}
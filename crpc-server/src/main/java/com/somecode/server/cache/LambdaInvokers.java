@@ -0,0 +1,128 @@
+package com.somecode.server.cache;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 用LambdaMetafactory为实现类的方法生成调用类，每个方法一个，绑定实现类的对象
+ * 生成的类和手写的lambda一样，直接用invokevirtual或invokeinterface调用实现类的方法，JIT可以把方法体内联进来；
+ * 保存在对象字段中的MethodHandle对JIT来说不是常量，invokeExact只能走通用的调用路径，无法内联
+ * 按参数个数和有没有返回值各定义一个函数式接口，参数超过MAX_ARITY个、方法或类不是public的，由调用方退回方法句柄
+ */
+final class LambdaInvokers {
+
+    /**
+     * 支持的最大参数个数
+     */
+    static final int MAX_ARITY = 6;
+
+    interface Call0 { Object call() throws Throwable; }
+
+    interface Call1 { Object call(Object a0) throws Throwable; }
+
+    interface Call2 { Object call(Object a0, Object a1) throws Throwable; }
+
+    interface Call3 { Object call(Object a0, Object a1, Object a2) throws Throwable; }
+
+    interface Call4 { Object call(Object a0, Object a1, Object a2, Object a3) throws Throwable; }
+
+    interface Call5 { Object call(Object a0, Object a1, Object a2, Object a3, Object a4) throws Throwable; }
+
+    interface Call6 { Object call(Object a0, Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable; }
+
+    interface Run0 { void run() throws Throwable; }
+
+    interface Run1 { void run(Object a0) throws Throwable; }
+
+    interface Run2 { void run(Object a0, Object a1) throws Throwable; }
+
+    interface Run3 { void run(Object a0, Object a1, Object a2) throws Throwable; }
+
+    interface Run4 { void run(Object a0, Object a1, Object a2, Object a3) throws Throwable; }
+
+    interface Run5 { void run(Object a0, Object a1, Object a2, Object a3, Object a4) throws Throwable; }
+
+    interface Run6 { void run(Object a0, Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable; }
+
+    /**
+     * 下标是参数个数
+     */
+    private static final Class<?>[] CALLS = {
+            Call0.class, Call1.class, Call2.class, Call3.class, Call4.class, Call5.class, Call6.class
+    };
+
+    private static final Class<?>[] RUNS = {
+            Run0.class, Run1.class, Run2.class, Run3.class, Run4.class, Run5.class, Run6.class
+    };
+
+    /**
+     * 不允许创建对象
+     */
+    private LambdaInvokers() {
+    }
+
+    /**
+     * 能否为这个方法生成调用类
+     * 生成的类只能访问public的类和方法，静态方法没有对象可以绑定
+     */
+    static boolean supports(Method method) {
+        int modifiers = method.getModifiers();
+        return method.getParameterCount() <= MAX_ARITY && Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers)
+                && Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    /**
+     * 生成绑定了target的调用对象，返回CallN或者RunN
+     * 参数按实际类型强转，基本类型拆箱，返回值装箱，由生成的类完成
+     */
+    static Object create(Object target, Method method) throws Throwable {
+        int arity = method.getParameterCount();
+        boolean returnsVoid = method.getReturnType() == void.class;
+        Class<?> functionType = returnsVoid ? RUNS[arity] : CALLS[arity];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle impl = lookup.unreflect(method);
+        // 函数式接口擦除后的形式：参数都是Object，返回Object或者void
+        MethodType samType = MethodType.genericMethodType(arity);
+        // 去掉对象参数后按实际类型实例化，基本类型换成包装类，由生成的类拆箱、装箱
+        MethodType instantiatedType = impl.type().dropParameterTypes(0, 1).wrap();
+        if (returnsVoid) {
+            samType = samType.changeReturnType(void.class);
+            instantiatedType = instantiatedType.changeReturnType(void.class);
+        }
+        CallSite site = LambdaMetafactory.metafactory(lookup, returnsVoid ? "run" : "call",
+                MethodType.methodType(functionType, method.getDeclaringClass()), samType, impl, instantiatedType);
+        return site.getTarget().invoke(target);
+    }
+
+    /**
+     * 按参数个数展开参数数组并调用，void方法返回null
+     */
+    static Object invoke(Object function, boolean returnsVoid, Object[] args) throws Throwable {
+        if (returnsVoid) {
+            switch (args.length) {
+                case 0: ((Run0) function).run(); return null;
+                case 1: ((Run1) function).run(args[0]); return null;
+                case 2: ((Run2) function).run(args[0], args[1]); return null;
+                case 3: ((Run3) function).run(args[0], args[1], args[2]); return null;
+                case 4: ((Run4) function).run(args[0], args[1], args[2], args[3]); return null;
+                case 5: ((Run5) function).run(args[0], args[1], args[2], args[3], args[4]); return null;
+                default: ((Run6) function).run(args[0], args[1], args[2], args[3], args[4], args[5]); return null;
+            }
+        }
+        switch (args.length) {
+            case 0: return ((Call0) function).call();
+            case 1: return ((Call1) function).call(args[0]);
+            case 2: return ((Call2) function).call(args[0], args[1]);
+            case 3: return ((Call3) function).call(args[0], args[1], args[2]);
+            case 4: return ((Call4) function).call(args[0], args[1], args[2], args[3]);
+            case 5: return ((Call5) function).call(args[0], args[1], args[2], args[3], args[4]);
+            default: return ((Call6) function).call(args[0], args[1], args[2], args[3], args[4], args[5]);
+        }
+    }
+
+}
@@ -1,10 +1,19 @@
 package com.somecode.server.cache;
 
+import com.somecode.common.stub.MethodDescriptor;
+import com.somecode.common.stub.ServiceDispatcher;
+import com.somecode.common.stub.ServiceDispatchers;
 import com.somecode.common.util.Holder;
 import com.somecode.server.configuration.InitServiceImplConfiguration;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -13,10 +22,23 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MethodCache {
 
     /**
-     * 方法的缓存
-     * 键值对：类名+方法名+参数的类名 = method
+     * 调用器的缓存
+     * 按照 类的标注名 -> 方法名 -> 参数类型列表 逐层查找，参数类型列表直接使用请求中的List作为键，
+     * 查找时不需要拼接字符串，也不需要再去配置文件中找实现类
      */
-    private static ConcurrentHashMap<String, Method> methodMap = new ConcurrentHashMap<>();
+    private static ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<List<String>, MethodInvoker>>>
+            invokerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 按方法id查找的调用器表，下标就是id，0不使用
+     * 只在加锁后扩容并整体替换，读取时不加锁
+     */
+    private static volatile MethodInvoker[] invokerTable = new MethodInvoker[16];
+
+    /**
+     * 已经分配的方法id数
+     */
+    private static int invokerCount = 0;
 
     /**
      * 实现类的缓存
@@ -72,28 +94,123 @@ public class MethodCache {
     private MethodCache () { }
 
     /**
-     * 获取一个方法
+     * 获取一个方法的调用器
+     * className为类的标注名，paramTypeNames为参数类型的类名，没有参数时可以为null
      */
-    public static Method getMethod(String className, String methodName, String[] paramTypeNames) {
-        // 将所有参数的类名拼接在一起
-        StringBuilder stringBuilder = new StringBuilder();
-        for (String paramTypeName: paramTypeNames) {
-            stringBuilder.append(paramTypeName);
+    public static MethodInvoker getInvoker(String className, String methodName, List<String> paramTypeNames) {
+        if (paramTypeNames == null) {
+            paramTypeNames = Collections.emptyList();
+        }
+        ConcurrentHashMap<String, ConcurrentHashMap<List<String>, MethodInvoker>> methods = invokerMap.get(className);
+        if (methods != null) {
+            ConcurrentHashMap<List<String>, MethodInvoker> signatures = methods.get(methodName);
+            if (signatures != null) {
+                MethodInvoker invoker = signatures.get(paramTypeNames);
+                if (invoker != null) {
+                    return invoker;
+                }
+            }
         }
-        // 键名
-        String key = getKey(className, methodName, paramTypeNames);
-        // 去拿这个方法
-        Method method = methodMap.get(key);
         // 如果为空就去加载
-        if (method == null) {
-            synchronized (methodHolder) {
-                if (methodMap.get(key) == null) {
-                    loadMethod(className, methodName, paramTypeNames);
+        // 类名、方法名来自客户端，加载成功后才放入缓存，不存在的方法抛出异常，不会留下空的缓存项
+        synchronized (methodHolder) {
+            methods = invokerMap.get(className);
+            ConcurrentHashMap<List<String>, MethodInvoker> signatures = methods == null ? null : methods.get(methodName);
+            MethodInvoker invoker = signatures == null ? null : signatures.get(paramTypeNames);
+            if (invoker == null) {
+                invoker = loadInvoker(invokerCount + 1, className, methodName, paramTypeNames);
+                // 先放入id表，再放入按名字查找的缓存，拿到id的客户端一定能按id找到
+                MethodInvoker[] table = invokerTable;
+                if (invoker.getId() >= table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
                 }
+                table[invoker.getId()] = invoker;
+                invokerTable = table;
+                invokerCount++;
+                // 复制一份作为键，请求中的List之后可能被修改
+                invokerMap.computeIfAbsent(className, key -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(methodName, key -> new ConcurrentHashMap<>())
+                        .put(new ArrayList<>(paramTypeNames), invoker);
             }
+            return invoker;
         }
-        method = methodMap.get(key);
-        return method;
+    }
+
+    /**
+     * 提前导出service-impl.yml中配置的全部实现类
+     * 加载实现类、创建对象，并为实现的接口中的每个方法生成调用器、分配id，返回导出的调用器
+     * 没有实现接口的类导出自己的全部public方法
+     */
+    public static List<MethodInvoker> export() {
+        List<MethodInvoker> invokers = new ArrayList<>();
+        for (String className : InitServiceImplConfiguration.getClassNames()) {
+            String fullClassName = InitServiceImplConfiguration.getFullClassName(className);
+            Class<?> clazz;
+            try {
+                clazz = MethodCache.class.getClassLoader().loadClass(fullClassName);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException(fullClassName + "没有对应的类！", e);
+            }
+            for (Method method : exportedMethods(clazz)) {
+                List<String> paramTypeNames = new ArrayList<>();
+                for (Class<?> paramType : method.getParameterTypes()) {
+                    paramTypeNames.add(paramType.getName());
+                }
+                invokers.add(getInvoker(className, method.getName(), paramTypeNames));
+            }
+        }
+        return invokers;
+    }
+
+    /**
+     * 实现类对外提供的方法，也就是客户端代理可能调用的接口方法
+     */
+    private static Set<Method> exportedMethods(Class<?> clazz) {
+        Set<Method> methods = new LinkedHashSet<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Class<?> anInterface : current.getInterfaces()) {
+                for (Method method : anInterface.getMethods()) {
+                    if (!Modifier.isStatic(method.getModifiers())) {
+                        methods.add(method);
+                    }
+                }
+            }
+        }
+        if (methods.isEmpty()) {
+            for (Method method : clazz.getMethods()) {
+                if (method.getDeclaringClass() != Object.class && !Modifier.isStatic(method.getModifiers())) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * 类实现的全部接口，包括父类和父接口实现的
+     */
+    private static Set<Class<?>> allInterfaces(Class<?> clazz) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            addInterfaces(current, interfaces);
+        }
+        return interfaces;
+    }
+
+    private static void addInterfaces(Class<?> clazz, Set<Class<?>> interfaces) {
+        for (Class<?> anInterface : clazz.getInterfaces()) {
+            if (interfaces.add(anInterface)) {
+                addInterfaces(anInterface, interfaces);
+            }
+        }
+    }
+
+    /**
+     * 按方法id获取调用器，id是按名字调用时分配的，不存在返回null
+     */
+    public static MethodInvoker getInvoker(int methodId) {
+        MethodInvoker[] table = invokerTable;
+        return methodId > 0 && methodId < table.length ? table[methodId] : null;
     }
 
     /**
@@ -103,7 +220,8 @@ public class MethodCache {
         Object object = objectMap.get(fullClassName);
         if (object == null) {
             synchronized (objectHolder) {
-                if (objectMap.get(fullClassName) == null) {
+                object = objectMap.get(fullClassName);
+                if (object == null) {
                     try {
                         object = classImplMap.get(fullClassName).newInstance();
                         objectMap.put(fullClassName, object);
@@ -117,40 +235,50 @@ public class MethodCache {
     }
 
     /**
-     * 加载一个方法
+     * 加载一个方法，生成调用器
      */
-    private static void loadMethod(String className, String methodName, String[] paramTypeNames) {
+    private static MethodInvoker loadInvoker(int id, String className, String methodName, List<String> paramTypeNames) {
+        // 实现类的全类名
+        String fullClassName = InitServiceImplConfiguration.getFullClassName(className);
         // 找到类
-        Class clazz = classImplMap.get(className);
+        Class clazz = classImplMap.get(fullClassName);
         if (clazz == null) {
             // 加载类
             synchronized (implHolder) {
-                clazz = classImplMap.get(className);
+                clazz = classImplMap.get(fullClassName);
                 if (clazz == null) {
                     // 加载
-                    loadClass(className);
+                    loadClass(fullClassName);
                 }
             }
             // 还是为空，说明不存在对应的class
-            clazz = classImplMap.get(className);
+            clazz = classImplMap.get(fullClassName);
             if (clazz == null) {
-                throw new RuntimeException(className + "没有对应的类！");
+                throw new RuntimeException(fullClassName + "没有对应的类！");
             }
         }
         // 类不为空，开始获取方法
         // 先要根据名字获取对应的类
-        System.out.println("类型：" + paramTypeNames[0]);
         Class<?>[] classes = getEntityClasses(paramTypeNames);
-        // 可以获取方法
         try {
-            System.out.println(methodName);
-            System.out.println(clazz.getName());
-            System.out.println(classes[0].getName());
             Method method = clazz.getMethod(methodName, classes);
-            // 放入缓存
-            methodMap.put(getKey(className, methodName, paramTypeNames), method);
-        } catch (Exception e) {
-            e.printStackTrace();
+            Object target = getObjectFromFullClassName(fullClassName);
+            // 优先使用编译时生成的分发器
+            for (Class<?> anInterface : allInterfaces(clazz)) {
+                ServiceDispatcher<?> dispatcher = ServiceDispatchers.get(anInterface);
+                if (dispatcher == null) {
+                    continue;
+                }
+                MethodDescriptor[] methods = dispatcher.getMethods();
+                for (int index = 0; index < methods.length; index++) {
+                    if (methods[index].matches(methodName, paramTypeNames)) {
+                        return new MethodInvoker(id, className, target, method, dispatcher, index);
+                    }
+                }
+            }
+            return new MethodInvoker(id, className, target, method);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(fullClassName + "没有对应的方法" + methodName + paramTypeNames + "！", e);
         }
     }
 
@@ -176,11 +304,11 @@ public class MethodCache {
     /**
      * 根据一个List<基本类型或实体类名>获取一个基本或实体类的数组
      */
-    private static Class<?>[] getEntityClasses(String[] entityNames) {
-        int entityNum = entityNames.length;
+    private static Class<?>[] getEntityClasses(List<String> entityNames) {
+        int entityNum = entityNames.size();
         Class[] classes = new Class[entityNum];
         for (int i = 0;i < entityNum;i++) {
-            classes[i] = getEntityClass(entityNames[i]);
+            classes[i] = getEntityClass(entityNames.get(i));
         }
         return classes;
     }
@@ -198,7 +326,6 @@ public class MethodCache {
             }
         }
         clazz = classBaseAndEntityMap.get(entityName);
-        System.out.println("getEntityClass:" + clazz);
         return clazz;
     }
 
@@ -206,11 +333,9 @@ public class MethodCache {
     // 为什么要独立出来？
     // 因为后续扩展可以做一个实体类映射的配置文件，更方便去使用
     private static void loadEntityClass(String entityName) {
-        System.out.println("最里面的加载" + entityName);
         // 此时的entityName本身就是一个全类名
         try {
             Class clazz = MethodCache.class.getClassLoader().loadClass(entityName);
-            System.out.println("实际情况：" + clazz);
             if (clazz != null) {
                 classBaseAndEntityMap.put(entityName, clazz);
             }
@@ -219,16 +344,4 @@ public class MethodCache {
         }
     }
 
-    /**
-     * 拼接键名
-     */
-    private static String getKey(String className, String methodName, String[] paramTypeNames) {
-        StringBuilder key = new StringBuilder(className + "-" + methodName + "-");
-        for (int i = 0;i < paramTypeNames.length - 1;i++) {
-            key.append(paramTypeNames[i] + "-");
-        }
-        key.append(paramTypeNames[paramTypeNames.length - 1]);
-        return key.toString();
-    }
-
 }
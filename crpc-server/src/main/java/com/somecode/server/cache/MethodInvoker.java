@@ -0,0 +1,145 @@
+package com.somecode.server.cache;
+
+import com.somecode.common.stub.ServiceDispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 一个实现类方法的调用器，加载时生成一次，之后每次请求直接调用
+ * 接口标注了@CrpcService时使用编译时生成的分发器，按下标用switch直接调用
+ * 否则用LambdaMetafactory为方法生成一个调用类，绑定实现类的对象，见LambdaInvokers
+ * 类或方法不是public、参数太多时退回方法句柄：句柄保存在字段中，JIT不把它当常量，调用不会被内联，只比Method.invoke少了访问检查
+ * 参数数组按位置展开，基本类型自动拆箱，返回值自动装箱，void方法返回null，实现类抛出的异常不会被包装成InvocationTargetException
+ */
+public class MethodInvoker {
+
+    /**
+     * 统一的调用形式
+     */
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    /**
+     * 分配给客户端的方法id，从1开始，整个服务端进程内唯一，所有连接共用
+     */
+    private final int id;
+
+    /**
+     * 类的标注名
+     */
+    private final String className;
+
+    /**
+     * 对应的方法
+     */
+    private final Method method;
+
+    /**
+     * LambdaMetafactory生成的调用对象，已经绑定了实现类的对象，不能生成时为null
+     */
+    private final Object function;
+
+    private final boolean returnsVoid;
+
+    /**
+     * 绑定了对象、展开了参数的方法句柄，只在没有分发器、也不能生成调用对象时使用
+     */
+    private final MethodHandle invoker;
+
+    /**
+     * 实现类的对象，使用分发器时才需要
+     */
+    private final Object target;
+
+    /**
+     * 生成的分发器和方法的下标
+     */
+    private final ServiceDispatcher<Object> dispatcher;
+
+    private final int index;
+
+    public MethodInvoker(int id, String className, Object target, Method method) throws IllegalAccessException {
+        this.id = id;
+        this.className = className;
+        this.method = method;
+        this.target = null;
+        this.dispatcher = null;
+        this.index = -1;
+        this.returnsVoid = method.getReturnType() == void.class;
+        this.function = createFunction(target, method);
+        if (function != null) {
+            this.invoker = null;
+        } else {
+            // 实现类不一定是public的，关闭访问检查后生成的句柄调用时不再检查
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).bindTo(target);
+            this.invoker = handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        }
+    }
+
+    public MethodInvoker(int id, String className, Object target, Method method,
+                         ServiceDispatcher<?> dispatcher, int index) {
+        this.id = id;
+        this.className = className;
+        this.method = method;
+        this.function = null;
+        this.returnsVoid = false;
+        this.invoker = null;
+        this.target = target;
+        this.dispatcher = (ServiceDispatcher<Object>) dispatcher;
+        this.index = index;
+    }
+
+    /**
+     * 生成调用对象，不支持或者生成失败时返回null，改用方法句柄
+     */
+    private static Object createFunction(Object target, Method method) {
+        if (!LambdaInvokers.supports(method)) {
+            return null;
+        }
+        try {
+            return LambdaInvokers.create(target, method);
+        } catch (Throwable e) {
+            System.out.println("方法" + method + "生成调用类失败，使用方法句柄：" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 调用方法，实现类抛出的异常原样抛出
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        if (dispatcher != null) {
+            return dispatcher.dispatch(target, index, args);
+        }
+        if (function != null) {
+            if (args.length != method.getParameterCount()) {
+                throw new IllegalArgumentException("方法" + method.getName() + "需要" + method.getParameterCount()
+                        + "个参数，实际传入" + args.length + "个！");
+            }
+            return LambdaInvokers.invoke(function, returnsVoid, args);
+        }
+        return (Object) invoker.invokeExact(args);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return method.getName();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+}
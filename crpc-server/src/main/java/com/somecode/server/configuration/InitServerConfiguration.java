@@ -3,7 +3,13 @@ package com.somecode.server.configuration;
 import com.somecode.common.spi.core.CompressAlgorithm;
 import com.somecode.common.spi.core.Serialize;
 import com.somecode.common.spi.extension.ExtensionLoader;
+import com.somecode.common.transport.Transport;
+import com.somecode.common.transport.TransportInfo;
 import com.somecode.common.util.Holder;
+import com.somecode.server.dispatcher.Dispatcher;
+import com.somecode.server.dispatcher.DispatcherInfo;
+import com.somecode.server.warmup.Warmup;
+import com.somecode.server.warmup.WarmupInfo;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.BufferedReader;
@@ -32,6 +38,26 @@ public class InitServerConfiguration {
      */
     private static CompressAlgorithm compressAlgorithm;
 
+    /**
+     * 传输层配置
+     */
+    private static TransportInfo transportInfo;
+
+    /**
+     * 业务线程配置
+     */
+    private static DispatcherInfo dispatcherInfo;
+
+    /**
+     * 启动预热配置
+     */
+    private static WarmupInfo warmupInfo;
+
+    /**
+     * 错误返回中调用栈保留的层数
+     */
+    private static Integer errorStackDepth;
+
     /**
      * 配置文件所有内容
      */
@@ -50,24 +76,52 @@ public class InitServerConfiguration {
 
     /**
      * 加载配置文件并初始化策略
+     * 全部解析成功后才一起生效，任何一项出错都抛出IllegalStateException，不会留下为null的配置
      */
     private static void initServerConfiguration() {
         try {
             // 获取默认配置文件路径
             URL url = InitServerConfiguration.class.getClassLoader().getResource(SERVER_PATH);
+            if (url == null) {
+                throw new IllegalArgumentException("找不到配置文件" + SERVER_PATH + "！");
+            }
             // 开始解析文件
             Yaml yaml = new Yaml();
             // 加载
-            serverConfigurationMap = yaml.load(new BufferedReader(new InputStreamReader(url.openStream(), "utf-8")));
+            Map map;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"))) {
+                map = yaml.load(reader);
+            }
             // 还不够
-            serverConfigurationMap = (LinkedHashMap) serverConfigurationMap.get("Server");
-            ExtensionLoader<Serialize> serializeExtensionLoader = ExtensionLoader.load(Serialize.class);
-            serialize = serializeExtensionLoader.getExtension(serverConfigurationMap.get("serialize").toString());
-            ExtensionLoader<CompressAlgorithm> compressAlgorithmExtensionLoader = ExtensionLoader.load(CompressAlgorithm.class);
-            compressAlgorithm = compressAlgorithmExtensionLoader.getExtension(serverConfigurationMap.get("compressAlgorithm").toString());
+            map = map == null ? null : (LinkedHashMap) map.get("Server");
+            if (map == null) {
+                throw new IllegalArgumentException("配置文件中没有Server节点！");
+            }
+            ExtensionLoader<Serialize> serializeExtensionLoader = ExtensionLoader.getExtensionLoader(Serialize.class);
+            Serialize serialize = serializeExtensionLoader.getExtension(String.valueOf(map.get("serialize")));
+            if (serialize == null) {
+                throw new IllegalArgumentException("不支持的序列化方式：" + map.get("serialize"));
+            }
+            ExtensionLoader<CompressAlgorithm> compressAlgorithmExtensionLoader = ExtensionLoader.getExtensionLoader(CompressAlgorithm.class);
+            CompressAlgorithm compressAlgorithm = compressAlgorithmExtensionLoader.getExtension(String.valueOf(map.get("compressAlgorithm")));
+            if (compressAlgorithm == null) {
+                throw new IllegalArgumentException("不支持的压缩算法：" + map.get("compressAlgorithm"));
+            }
+            TransportInfo transportInfo = Transport.parse((Map) map.get("transport"));
+            DispatcherInfo dispatcherInfo = Dispatcher.parse((Map) map.get("dispatcher"));
+            WarmupInfo warmupInfo = Warmup.parse((Map) map.get("warmup"));
+            Object depth = map.get("errorStackDepth");
+            Integer errorStackDepth = depth == null ? 0 : Integer.valueOf(depth.toString());
             // 初始化完毕
+            InitServerConfiguration.serverConfigurationMap = map;
+            InitServerConfiguration.serialize = serialize;
+            InitServerConfiguration.compressAlgorithm = compressAlgorithm;
+            InitServerConfiguration.transportInfo = transportInfo;
+            InitServerConfiguration.dispatcherInfo = dispatcherInfo;
+            InitServerConfiguration.warmupInfo = warmupInfo;
+            InitServerConfiguration.errorStackDepth = errorStackDepth;
         } catch (Exception e) {
-            e.printStackTrace();
+            throw new IllegalStateException("加载服务端配置" + SERVER_PATH + "失败！", e);
         }
     }
 
@@ -99,4 +153,60 @@ public class InitServerConfiguration {
         return compressAlgorithm;
     }
 
+    /**
+     * 获取传输层配置
+     */
+    public static TransportInfo getTransportInfo() {
+        if (transportInfo == null) {
+            synchronized (holder) {
+                if (transportInfo == null) {
+                    initServerConfiguration();
+                }
+            }
+        }
+        return transportInfo;
+    }
+
+    /**
+     * 获取业务线程配置
+     */
+    public static DispatcherInfo getDispatcherInfo() {
+        if (dispatcherInfo == null) {
+            synchronized (holder) {
+                if (dispatcherInfo == null) {
+                    initServerConfiguration();
+                }
+            }
+        }
+        return dispatcherInfo;
+    }
+
+    /**
+     * 获取启动预热配置
+     */
+    public static WarmupInfo getWarmupInfo() {
+        if (warmupInfo == null) {
+            synchronized (holder) {
+                if (warmupInfo == null) {
+                    initServerConfiguration();
+                }
+            }
+        }
+        return warmupInfo;
+    }
+
+    /**
+     * 获取错误返回中调用栈保留的层数，0为不返回调用栈
+     */
+    public static int getErrorStackDepth() {
+        if (errorStackDepth == null) {
+            synchronized (holder) {
+                if (errorStackDepth == null) {
+                    initServerConfiguration();
+                }
+            }
+        }
+        return errorStackDepth;
+    }
+
 }
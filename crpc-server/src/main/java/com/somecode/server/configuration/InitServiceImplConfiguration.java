@@ -6,7 +6,9 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class InitServiceImplConfiguration {
 
@@ -52,6 +54,25 @@ public class InitServiceImplConfiguration {
      * 获取配置文件中标注名对应的全类名
      */
     public static String getFullClassName(String className) {
+        Object fullClassName = requireServiceConfiguration().get(className);
+        if (fullClassName == null) {
+            throw new IllegalArgumentException(SERVICE_PATH + "中没有配置" + className + "！");
+        }
+        return fullClassName.toString();
+    }
+
+    /**
+     * 获取配置文件中全部的标注名
+     */
+    public static Set<String> getClassNames() {
+        Set<String> classNames = new LinkedHashSet<>();
+        for (Object className : requireServiceConfiguration().keySet()) {
+            classNames.add(className.toString());
+        }
+        return classNames;
+    }
+
+    private static Map requireServiceConfiguration() {
         if (serviceConfigurationMap == null) {
             synchronized (holder) {
                 if (serviceConfigurationMap == null) {
@@ -59,8 +80,7 @@ public class InitServiceImplConfiguration {
                 }
             }
         }
-        System.out.println(className);
-        return serviceConfigurationMap.get(className).toString();
+        return serviceConfigurationMap;
     }
 
 }
@@ -1,15 +1,19 @@
 package com.somecode.server.connection;
 
+import com.somecode.common.codec.Codecs;
+import com.somecode.common.codec.FrameDecoder;
+import com.somecode.common.codec.FrameEncoder;
+import com.somecode.common.codec.Protocol;
+import com.somecode.common.transport.Transport;
+import com.somecode.common.transport.TransportInfo;
+import com.somecode.core.compressAlgorithm.Configuration;
 import com.somecode.core.registerCenter.zookeeper.ServerRegisterCenter;
+import com.somecode.server.configuration.InitServerConfiguration;
+import com.somecode.server.warmup.Warmup;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.bytes.ByteArrayDecoder;
-import io.netty.handler.codec.bytes.ByteArrayEncoder;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 public class NettyServer {
 
@@ -21,6 +25,10 @@ public class NettyServer {
 
     public NettyServer(Integer port) {
         this.port = port;
+        // 先预热，再监听端口、注册到注册中心，客户端发现这个服务时它已经可以直接处理请求
+        // 请求可能使用任何一种登记的编解码方式，全部提前实例化
+        Codecs.load();
+        Warmup.run(InitServerConfiguration.getWarmupInfo());
         initChannel();
         ServerRegisterCenter.register();
     }
@@ -29,49 +37,65 @@ public class NettyServer {
      * 初始化channel
      */
     private void initChannel() {
-        // 创建两个线程组bossGroup和workerGroup, 含有的子线程NioEventLoop的个数默认为cpu核数的两倍
+        // 传输层配置
+        TransportInfo transportInfo = InitServerConfiguration.getTransportInfo();
+        // 开启SO_REUSEPORT后同一个端口会绑定多个监听通道，每个监听通道需要一个boss线程
+        boolean reusePort = Transport.useEpoll(transportInfo) && Boolean.TRUE.equals(transportInfo.getReusePort());
+        int acceptorChannels = reusePort ? transportInfo.getAcceptorChannels() : 1;
+        // 连接级别压缩解压后的最大长度
+        int maxUncompressSize = Configuration.getMaxUncompressSize();
+        // 创建两个线程组bossGroup和workerGroup
         // bossGroup只是处理连接请求 ,真正的和客户端业务处理，会交给workerGroup完成
-        EventLoopGroup bossGroup = new NioEventLoopGroup(3);
-        EventLoopGroup workerGroup = new NioEventLoopGroup(8);
+        // 可用时使用epoll，否则使用nio
+        EventLoopGroup bossGroup = Transport.newEventLoopGroup(transportInfo,
+                Math.max(transportInfo.getBossThreads(), acceptorChannels), new DefaultThreadFactory("crpc-boss"));
+        EventLoopGroup workerGroup = Transport.newEventLoopGroup(transportInfo,
+                transportInfo.getWorkerThreads(), new DefaultThreadFactory("crpc-worker"));
         // 创建管道处理器
         NettyServerHandler nettyServerHandler = new NettyServerHandler();
+        FrameEncoder frameEncoder = new FrameEncoder();
         try {
             // 创建服务器端的启动对象
             ServerBootstrap bootstrap = new ServerBootstrap();
             // 使用链式编程来配置参数
             bootstrap.group(bossGroup, workerGroup) //设置两个线程组
-                    // 使用NioServerSocketChannel作为服务器的通道实现
-                    .channel(NioServerSocketChannel.class)
-                    // 初始化服务器连接队列大小，服务端处理客户端连接请求是顺序处理的,所以同一时间只能处理一个客户端连接。
-                    // 多个客户端同时来的时候,服务端将不能处理的客户端连接请求放在队列中等待处理
-                    .option(ChannelOption.SO_BACKLOG, 1024)
+                    // 服务器的通道实现，EpollServerSocketChannel或者NioServerSocketChannel
+                    .channel(Transport.serverChannelClass(transportInfo))
                     .childHandler(new ChannelInitializer<SocketChannel>() {//创建通道初始化对象，设置初始化参数，在 SocketChannel 建立起来之前执行
                         @Override
                         protected void initChannel(SocketChannel ch) throws Exception {
                             //对workerGroup的SocketChannel设置处理器
                             ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
-                            pipeline.addLast("frameEncoder", new LengthFieldPrepender(4));
-                            pipeline.addLast("decoder", new ByteArrayDecoder());
-                            pipeline.addLast("encoder", new ByteArrayEncoder());
+                            // 连接级别的压缩在帧编解码器之前
+                            Transport.addCompression(pipeline, transportInfo, maxUncompressSize);
+                            // 解码器按照收到的第一帧判断客户端使用的协议，旧协议的客户端也可以直接连接
+                            pipeline.addLast("frameDecoder", new FrameDecoder(transportInfo.getMaxFrameLength(), Protocol.REQUEST));
+                            pipeline.addLast("frameEncoder", frameEncoder);
                             pipeline.addLast("handler", nettyServerHandler);
                         }
                     });
+            // 初始化服务器连接队列大小，TCP_NODELAY、缓冲区、写水位等参数
+            // 服务端处理客户端连接请求是顺序处理的,所以同一时间只能处理一个客户端连接。
+            // 多个客户端同时来的时候,服务端将不能处理的客户端连接请求放在队列中等待处理
+            Transport.applyServerOptions(bootstrap, transportInfo);
             System.out.println("netty server start。。");
             // 绑定一个端口并且同步, 生成了一个ChannelFuture异步对象，通过isDone()等方法可以判断异步事件的执行情况
             // 启动服务器(并绑定端口)，bind是异步操作，sync方法是等待异步操作执行完毕
-            ChannelFuture cf = bootstrap.bind(port).sync();
-            // 给cf注册监听器，监听我们关心的事件
-            cf.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (cf.isSuccess()) {
-                        System.out.println("监听端口9000成功");
-                    } else {
-                        System.out.println("监听端口9000失败");
+            // 开启SO_REUSEPORT后多次绑定同一个端口，由内核把连接分配到不同的监听通道上
+            for (int i = 0; i < acceptorChannels; i++) {
+                ChannelFuture cf = bootstrap.bind(port).sync();
+                // 给cf注册监听器，监听我们关心的事件
+                cf.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (cf.isSuccess()) {
+                            System.out.println("监听端口" + port + "成功");
+                        } else {
+                            System.out.println("监听端口" + port + "失败");
+                        }
                     }
-                }
-            });
+                });
+            }
             // 等待服务端监听端口关闭，closeFuture是异步操作
             // 通过sync方法同步等待通道关闭处理完毕，这里会阻塞等待通道关闭完成，内部调用的是Object的wait()方法
 //            channel = cf.channel();
@@ -1,24 +1,64 @@
 package com.somecode.server.connection;
 
+import com.somecode.common.codec.Codecs;
+import com.somecode.common.codec.MessageFrame;
+import com.somecode.common.codec.PayloadCodec;
+import com.somecode.common.codec.Protocol;
 import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.entity.ResponseMessage;
 import com.somecode.common.spi.core.CompressAlgorithm;
 import com.somecode.common.spi.core.Serialize;
+import com.somecode.common.transport.Transport;
+import com.somecode.core.compressAlgorithm.Configuration;
 import com.somecode.server.cache.MethodCache;
+import com.somecode.server.cache.MethodInvoker;
 import com.somecode.server.configuration.InitServerConfiguration;
-import com.somecode.server.configuration.InitServiceImplConfiguration;
-import io.netty.buffer.ByteBuf;
+import com.somecode.server.dispatcher.Dispatcher;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 
-import java.lang.reflect.Method;
-import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * 服务端处理器，没有连接相关的状态，所有连接共用一个
+ */
+@ChannelHandler.Sharable
 public class NettyServerHandler extends ChannelInboundHandlerAdapter {
 
     /**
-     * Id长度
+     * 小于这个长度的返回数据包不压缩
+     * 使用连接级别的压缩时由管道中的压缩流压缩，数据包不再单独压缩
      */
-    Integer ID_LENGTH = 4;
+    private final int minCompressSize = Transport.useStreamCompression(InitServerConfiguration.getTransportInfo())
+            ? Integer.MAX_VALUE : Configuration.getMinCompressSize();
+
+    /**
+     * 错误返回中调用栈保留的层数
+     */
+    private final int errorStackDepth = InitServerConfiguration.getErrorStackDepth();
+
+    /**
+     * 没有参数的方法使用的参数数组
+     */
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * 业务线程，所有连接共用
+     */
+    private final Dispatcher dispatcher;
+
+    public NettyServerHandler() {
+        this(new Dispatcher(InitServerConfiguration.getDispatcherInfo()));
+    }
+
+    /**
+     * 指定业务线程，预热时在当前线程上直接执行
+     */
+    public NettyServerHandler(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 
     /**
      * 当客户端连接服务器完成就会触发该方法
@@ -32,6 +72,7 @@ public class NettyServerHandler extends ChannelInboundHandlerAdapter {
 
     /**
      * 读取客户端发送的数据
+     * 心跳原样回复，单向请求执行后不回复，其他请求任何一步失败都回复带有错误状态的返回，客户端收到后立即失败
      *
      * @param ctx 上下文对象, 含有通道channel，管道pipeline
      * @param msg 就是客户端发送的数据
@@ -39,128 +80,197 @@ public class NettyServerHandler extends ChannelInboundHandlerAdapter {
      */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        byte[] bytes = (byte[]) msg;
-        System.out.println("数据长度: " + bytes.length);
-        byte[][] idAndData = takeApart(ID_LENGTH, bytes);
-        // 反压缩
-        CompressAlgorithm compressAlgorithm = InitServerConfiguration.getCompressAlgorithm();
-        System.out.println("压缩算法：" + compressAlgorithm);
-        byte[] data = null;
+        MessageFrame frame = (MessageFrame) msg;
+        long id = frame.getId();
+        byte type = frame.getType();
+        if (type == Protocol.HEARTBEAT) {
+            frame.release();
+            ctx.writeAndFlush(new MessageFrame(Protocol.HEARTBEAT, (byte) 0, (byte) 0, (byte) 0, (byte) 0, id,
+                    Unpooled.EMPTY_BUFFER));
+            return;
+        }
+        // 按照帧头中的id选择编解码方式，回复也使用同样的方式，不同的客户端可以使用不同的策略
+        // id为0时使用配置的方式：旧协议的帧头中没有编解码方式，没有固定id的扩展也写0
+        Serialize serialize = frame.getSerializerId() == 0
+                ? InitServerConfiguration.getSerialize() : Codecs.getSerialize(frame.getSerializerId());
+        CompressAlgorithm compressAlgorithm = frame.getCompressorId() == 0
+                ? InitServerConfiguration.getCompressAlgorithm() : Codecs.getCompressAlgorithm(frame.getCompressorId());
+        boolean reply = type == Protocol.REQUEST;
+        if (serialize == null || compressAlgorithm == null) {
+            frame.release();
+            if (reply) {
+                // 客户端无法按照它的方式解码，只能依靠帧头中的状态得知失败
+                writeResponse(ctx, id, ResponseMessage.error(ResponseMessage.BAD_REQUEST, null,
+                        "不支持的编解码方式：序列化" + frame.getSerializerId() + "，压缩" + frame.getCompressorId(),
+                        null), InitServerConfiguration.getSerialize(), InitServerConfiguration.getCompressAlgorithm());
+            }
+            return;
+        }
+        if (type != Protocol.REQUEST && type != Protocol.ONE_WAY) {
+            frame.release();
+            writeResponse(ctx, id, ResponseMessage.error(ResponseMessage.BAD_REQUEST, null,
+                    "不支持的消息类型：" + type, null), serialize, compressAlgorithm);
+            return;
+        }
+        // 反压缩并反序列化，直接读取接收缓冲区，不复制成byte数组
+        RequestMessage requestMessage;
         try {
-            data = compressAlgorithm.uncompress(idAndData[1]);
-        }catch (Exception e) {
+            requestMessage = (RequestMessage) PayloadCodec.decode(frame, serialize, compressAlgorithm);
+        } catch (Exception e) {
             e.printStackTrace();
+            if (reply) {
+                writeError(ctx, id, ResponseMessage.BAD_REQUEST, e, serialize, compressAlgorithm);
+            }
+            return;
+        } finally {
+            frame.release();
         }
-        System.out.println("数据长度data：" + data.length);
-        System.out.println(new String(data));
-        // 反序列化
-        Serialize serialize = InitServerConfiguration.getSerialize();
-        System.out.println("序列化算法：" + serialize);
-        RequestMessage requestMessage = null;
+        // 带有方法id的直接查表，否则按类的标注名、方法名和参数类型查找，只在第一次调用时加载
+        MethodInvoker invoker;
         try {
-            requestMessage = (RequestMessage) serialize.deserialize(data);
-        }catch (Exception e) {
+            invoker = requestMessage.getMethodId() != 0
+                    ? MethodCache.getInvoker(requestMessage.getMethodId())
+                    : MethodCache.getInvoker(requestMessage.getClassName(),
+                    requestMessage.getMethodName(), requestMessage.getParamObjectTypeLit());
+        } catch (Exception e) {
             e.printStackTrace();
+            if (reply) {
+                writeError(ctx, id, ResponseMessage.NOT_FOUND, e, serialize, compressAlgorithm);
+            }
+            return;
         }
-        System.out.println(requestMessage.toString());
-        // 根据信息中的要求加载对应的实现类的对应方法
-        // 先是对应的实现类
-        // 实现类的全类名
-        String fullClassName = "";
-        Method method = null;
-        try {
-            fullClassName = InitServiceImplConfiguration.getFullClassName(requestMessage.getClassName());
-            System.out.println("读取的全类名：" + fullClassName);
-            // 获取对应的方法
-            String[] requestMessages = new String[requestMessage.getParamObjectList().size()];
-            requestMessages = requestMessage.getParamObjectTypeLit().toArray(requestMessages);
-            for(String a: requestMessages) {
-                System.out.println(a);
+        if (invoker == null) {
+            if (reply) {
+                writeResponse(ctx, id, ResponseMessage.error(ResponseMessage.NOT_FOUND, null,
+                        "不存在id为" + requestMessage.getMethodId() + "的方法！", null), serialize, compressAlgorithm);
             }
-            method = MethodCache.getMethod(fullClassName, requestMessage.getMethodName(), requestMessages);
-            System.out.println("获取的方法：" + method.getName());
-        }catch (Exception e) {
-            e.printStackTrace();
+            return;
+        }
+        // 按名字调用的请求，把分配的id告诉客户端
+        int methodId = requestMessage.getMethodId() == 0 ? invoker.getId() : 0;
+        List<Object> paramObjectList = requestMessage.getParamObjectList();
+        Object[] paramObjects = paramObjectList == null ? NO_ARGS : paramObjectList.toArray();
+        // 交给业务线程执行，IO线程只负责解码和写出
+        boolean accepted = dispatcher.dispatch(invoker.getClassName(), invoker.getMethodName(), reply
+                ? () -> invoke(ctx, id, invoker, paramObjects, methodId, serialize, compressAlgorithm)
+                : () -> invokeOneWay(invoker, paramObjects));
+        if (!accepted && reply) {
+            writeResponse(ctx, id, ResponseMessage.error(ResponseMessage.REJECTED, null,
+                    "业务线程池已满：" + invoker.getClassName() + "." + invoker.getMethodName(), null),
+                    serialize, compressAlgorithm);
         }
-        // 执行
-        Object o = null;
-        // 第一个参数是method对应的实体类对象
+    }
+
+    /**
+     * 执行单向请求对应的方法，不写回结果，失败只打印异常
+     */
+    private void invokeOneWay(MethodInvoker invoker, Object[] paramObjects) {
         try {
-            System.out.println("执行方法开始");
-            System.out.println(MethodCache.getObjectFromFullClassName(fullClassName).getClass().getName());
-            System.out.println(requestMessage.getParamObjectList().get(0).getClass().getName());
-            List<Object> paramObjectList = requestMessage.getParamObjectList();
-            Object[] paramObjects = new Object[paramObjectList.size()];
-            for (int i = 0;i < paramObjects.length;i++) {
-                paramObjects[i] = paramObjectList.get(i);
-            }
-            // 用List会出错，但是idea不会有提示
-            // 必须要对象数组
-            o = method.invoke(MethodCache.getObjectFromFullClassName(fullClassName), paramObjects);
-            System.out.println("执行方法结束");
-        } catch (Exception e) {
+            invoker.invoke(paramObjects);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
-        System.out.println("111111111111");
-        // 序列化
-        bytes = serialize.serialize(o);
-        System.out.println("序列化后长度：" + bytes.length);
-        // 压缩
-        bytes = compressAlgorithm.compress(bytes);
-        System.out.println(compressAlgorithm.getClass().getName());
-        System.out.println("压缩后长度：" + bytes.length);
-        // 放入id
-        bytes = merge(idAndData[0], bytes);
-        System.out.println("放入id后长度：" + bytes.length);
-        // 写入
-        ctx.channel().writeAndFlush(bytes);
     }
 
     /**
-     * 数据读取完毕处理方法
-     *
-     * @param ctx
-     * @throws Exception
+     * 执行请求对应的方法并写回结果，在业务线程上执行
      */
-    @Override
-    public void channelReadComplete(ChannelHandlerContext ctx) {
-        System.out.println("读取结束！");
+    private void invoke(ChannelHandlerContext ctx, long id, MethodInvoker invoker, Object[] paramObjects, int methodId,
+                        Serialize serialize, CompressAlgorithm compressAlgorithm) {
+        Object o;
+        try {
+            o = invoker.invoke(paramObjects);
+        } catch (Throwable e) {
+            writeError(ctx, id, ResponseMessage.SERVICE_ERROR, e, serialize, compressAlgorithm);
+            return;
+        }
+        // 实现类返回的是CompletableFuture，等待完成后再写回，不占用当前线程
+        if (o instanceof CompletableFuture) {
+            ((CompletableFuture<?>) o).whenComplete((result, cause) -> {
+                if (cause != null) {
+                    // 依赖的future失败时异常会被包装成CompletionException
+                    Throwable error = cause instanceof CompletionException && cause.getCause() != null
+                            ? cause.getCause() : cause;
+                    writeError(ctx, id, ResponseMessage.SERVICE_ERROR, error, serialize, compressAlgorithm);
+                    return;
+                }
+                writeResponse(ctx, id, ResponseMessage.ok(result, methodId), serialize, compressAlgorithm);
+            });
+            return;
+        }
+        writeResponse(ctx, id, ResponseMessage.ok(o, methodId), serialize, compressAlgorithm);
     }
 
     /**
-     * 处理异常, 一般是需要关闭通道
-     *
-     * @param ctx
-     * @param cause
-     * @throws Exception
+     * 把异常转换成错误返回写回，只带回异常的类名、信息和按配置裁剪的调用栈
      */
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        ctx.close();
+    private void writeError(ChannelHandlerContext ctx, long id, int status, Throwable e,
+                            Serialize serialize, CompressAlgorithm compressAlgorithm) {
+        writeResponse(ctx, id, ResponseMessage.error(status, e.getClass().getName(), e.getMessage(), trimStack(e)),
+                serialize, compressAlgorithm);
     }
 
     /**
-     * 拆解
+     * 只保留调用栈的前errorStackDepth层，为0时不返回调用栈
      */
-    private byte[][] takeApart(Integer idBytesLength, byte[] all) {
-        byte[][] bytes = new byte[2][];
-        bytes[0] = new byte[idBytesLength];
-        bytes[1] = new byte[all.length - idBytesLength];
-        // 将all的0-idLength复制到bytes[0]
-        System.arraycopy(all, 0, bytes[0], 0, bytes[0].length);
-        // 将all的idLength-all.length复制到bytes[1]
-        System.arraycopy(all, bytes[0].length, bytes[1], 0, bytes[1].length);
-        return bytes;
+    private String trimStack(Throwable e) {
+        if (errorStackDepth <= 0) {
+            return null;
+        }
+        StackTraceElement[] stackTrace = e.getStackTrace();
+        int depth = Math.min(errorStackDepth, stackTrace.length);
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            stack.append("\tat ").append(stackTrace[i]).append('\n');
+        }
+        if (depth < stackTrace.length) {
+            stack.append("\t... ").append(stackTrace.length - depth).append(" more\n");
+        }
+        return stack.toString();
     }
 
     /**
-     * 加工
+     * 序列化、压缩并写回执行结果
+     * 执行结果无法序列化时改为回复SERVER_ERROR
+     * 旧协议的客户端只能解析执行结果本身，失败时写回null
      */
-    private byte[] merge(byte[] idBytes, byte[] msg) {
-        byte[] newBytes = new byte[idBytes.length + msg.length];
-        System.arraycopy(idBytes, 0, newBytes, 0, idBytes.length);
-        System.arraycopy(msg, 0, newBytes, idBytes.length, msg.length);
-        return newBytes;
+    private void writeResponse(ChannelHandlerContext ctx, long id, ResponseMessage responseMessage,
+                               Serialize serialize, CompressAlgorithm compressAlgorithm) {
+        // 序列化并压缩，直接写入池化的缓冲区
+        MessageFrame frame;
+        try {
+            frame = Boolean.TRUE.equals(ctx.channel().attr(Protocol.LEGACY).get())
+                    ? PayloadCodec.encodeLegacyResponse(ctx.alloc(), id, responseMessage.getResult(), serialize,
+                    compressAlgorithm)
+                    : PayloadCodec.encodeResponse(ctx.alloc(), id, responseMessage, serialize, compressAlgorithm,
+                    minCompressSize);
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (responseMessage.getStatus() == ResponseMessage.SERVER_ERROR) {
+                // 错误信息本身也无法序列化，写出只有帧头的错误帧，客户端按帧头中的状态立即失败，不用等超时
+                // 旧协议没有状态，空的数据包在客户端解码失败，同样立即失败
+                ctx.channel().writeAndFlush(new MessageFrame(Protocol.RESPONSE, (byte) 0, (byte) 0, (byte) 0,
+                        (byte) ResponseMessage.SERVER_ERROR, id, Unpooled.EMPTY_BUFFER));
+                return;
+            }
+            writeResponse(ctx, id, ResponseMessage.error(ResponseMessage.SERVER_ERROR, e.getClass().getName(),
+                    "返回结果序列化失败：" + e.getMessage(), null), serialize, compressAlgorithm);
+            return;
+        }
+        // 写入，编码器写出帧头后原样写出数据包
+        ctx.channel().writeAndFlush(frame);
+    }
+
+    /**
+     * 处理异常, 一般是需要关闭通道
+     *
+     * @param ctx
+     * @param cause
+     * @throws Exception
+     */
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
     }
 
 }
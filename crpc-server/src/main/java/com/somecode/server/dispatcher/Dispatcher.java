@@ -0,0 +1,270 @@
+package com.somecode.server.dispatcher;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把解码后的请求交给业务线程执行，IO线程只负责解码和写出
+ * direct：在IO线程上直接执行，只适合不会阻塞的服务
+ * shared：所有服务共用一个有界的业务线程池
+ * isolated：配置了的服务或者方法使用自己的线程池，其他的使用共用线程池，一个慢服务占满的只是自己的线程池
+ * virtual：每个请求一个虚拟线程（JDK 21及以上），按照threads限制同时执行的请求数，isolated的配置同样生效
+ */
+public class Dispatcher {
+
+    public static final String DIRECT = "direct";
+
+    public static final String SHARED = "shared";
+
+    public static final String ISOLATED = "isolated";
+
+    public static final String VIRTUAL = "virtual";
+
+    /**
+     * 拒绝策略：不执行，回复REJECTED
+     */
+    public static final String ABORT = "abort";
+
+    /**
+     * 拒绝策略：在提交任务的IO线程上执行
+     */
+    public static final String CALLER_RUNS = "callerRuns";
+
+    /**
+     * 空闲线程的存活时间，单位s
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * 共用线程池，direct方式下为null
+     */
+    private final Executor sharedExecutor;
+
+    /**
+     * virtual方式下所有请求共用的虚拟线程执行器，其他方式下为null
+     */
+    private final Executor virtualExecutor;
+
+    /**
+     * 是否在提交任务的线程上执行被拒绝的任务
+     */
+    private final boolean callerRuns;
+
+    /**
+     * 服务的标注名 -> 服务的线程池
+     */
+    private final Map<String, ServiceExecutor> serviceExecutors = new HashMap<>();
+
+    public Dispatcher(DispatcherInfo dispatcherInfo) {
+        String mode = dispatcherInfo.getMode();
+        callerRuns = isCallerRuns(dispatcherInfo.getRejectPolicy());
+        if (DIRECT.equalsIgnoreCase(mode)) {
+            sharedExecutor = null;
+            virtualExecutor = null;
+            return;
+        }
+        if (!SHARED.equalsIgnoreCase(mode) && !ISOLATED.equalsIgnoreCase(mode) && !VIRTUAL.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("不支持的执行方式：" + mode + "，可选direct、shared、isolated、virtual！");
+        }
+        if (VIRTUAL.equalsIgnoreCase(mode) && !VirtualThreads.isSupported()) {
+            System.out.println("当前JDK不支持虚拟线程，使用业务线程池执行！");
+        }
+        virtualExecutor = VIRTUAL.equalsIgnoreCase(mode) && VirtualThreads.isSupported()
+                ? VirtualThreads.newExecutor("crpc-virtual") : null;
+        RejectedExecutionHandler rejectedHandler = callerRuns
+                ? new ThreadPoolExecutor.CallerRunsPolicy() : new ThreadPoolExecutor.AbortPolicy();
+        sharedExecutor = newExecutor("crpc-biz", dispatcherInfo.getShared(), rejectedHandler);
+        if (SHARED.equalsIgnoreCase(mode)) {
+            return;
+        }
+        // 先创建服务的线程池，方法没有配置服务的线程池时使用共用线程池
+        for (Map.Entry<String, ExecutorInfo> entry : dispatcherInfo.getIsolated().entrySet()) {
+            if (entry.getKey().indexOf('.') < 0) {
+                serviceExecutors.put(entry.getKey(), new ServiceExecutor(
+                        newExecutor("crpc-biz-" + entry.getKey(), entry.getValue(), rejectedHandler)));
+            }
+        }
+        for (Map.Entry<String, ExecutorInfo> entry : dispatcherInfo.getIsolated().entrySet()) {
+            int dot = entry.getKey().indexOf('.');
+            if (dot < 0) {
+                continue;
+            }
+            String className = entry.getKey().substring(0, dot);
+            String methodName = entry.getKey().substring(dot + 1);
+            serviceExecutors.computeIfAbsent(className, key -> new ServiceExecutor(sharedExecutor)).methodExecutors
+                    .put(methodName, newExecutor("crpc-biz-" + entry.getKey(), entry.getValue(), rejectedHandler));
+        }
+    }
+
+    /**
+     * 按照服务和方法选择线程池执行任务
+     * 拒绝策略为abort时，线程池满了的请求不执行，返回false，由调用方回复REJECTED
+     */
+    public boolean dispatch(String className, String methodName, Runnable task) {
+        Executor executor = select(className, methodName);
+        if (executor == null) {
+            task.run();
+            return true;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.out.println("业务线程池已满，拒绝请求：" + className + "." + methodName);
+            return false;
+        }
+    }
+
+    /**
+     * 先找方法的线程池，再找服务的线程池，都没有就使用共用线程池
+     */
+    private Executor select(String className, String methodName) {
+        if (serviceExecutors.isEmpty()) {
+            return sharedExecutor;
+        }
+        ServiceExecutor serviceExecutor = serviceExecutors.get(className);
+        if (serviceExecutor == null) {
+            return sharedExecutor;
+        }
+        Executor methodExecutor = serviceExecutor.methodExecutors.get(methodName);
+        return methodExecutor != null ? methodExecutor : serviceExecutor.executor;
+    }
+
+    /**
+     * 创建有界的线程池，空闲的线程超时后回收
+     * virtual方式下不创建线程池，按照threads限制提交到虚拟线程执行器的任务数
+     */
+    private Executor newExecutor(String name, ExecutorInfo executorInfo, RejectedExecutionHandler rejectedHandler) {
+        if (executorInfo.getThreads() < 1 || executorInfo.getQueueSize() < 1) {
+            throw new IllegalArgumentException(name + "的threads和queueSize不能小于1！");
+        }
+        if (virtualExecutor != null) {
+            return new BoundedExecutor(virtualExecutor, executorInfo.getThreads(), callerRuns);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(executorInfo.getThreads(), executorInfo.getThreads(),
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(executorInfo.getQueueSize()),
+                new DefaultThreadFactory(name), rejectedHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static boolean isCallerRuns(String rejectPolicy) {
+        if (ABORT.equalsIgnoreCase(rejectPolicy)) {
+            return false;
+        }
+        if (CALLER_RUNS.equalsIgnoreCase(rejectPolicy)) {
+            return true;
+        }
+        throw new IllegalArgumentException("不支持的拒绝策略：" + rejectPolicy + "，可选abort、callerRuns！");
+    }
+
+    /**
+     * 根据配置文件中的dispatcher节点生成配置，没有配置的项使用默认值
+     */
+    public static DispatcherInfo parse(Map dispatcherMap) {
+        DispatcherInfo dispatcherInfo = new DispatcherInfo();
+        if (dispatcherMap == null) {
+            return dispatcherInfo;
+        }
+        try {
+            if (dispatcherMap.get("mode") != null) {
+                dispatcherInfo.setMode(dispatcherMap.get("mode").toString());
+            }
+            if (dispatcherMap.get("rejectPolicy") != null) {
+                dispatcherInfo.setRejectPolicy(dispatcherMap.get("rejectPolicy").toString());
+            }
+            dispatcherInfo.setShared(parseExecutor((Map) dispatcherMap.get("shared")));
+            Map isolatedMap = (Map) dispatcherMap.get("isolated");
+            if (isolatedMap != null) {
+                for (Object key : isolatedMap.keySet()) {
+                    dispatcherInfo.getIsolated().put(key.toString(), parseExecutor((Map) isolatedMap.get(key)));
+                }
+            }
+        } catch (NumberFormatException | ClassCastException e) {
+            throw new IllegalArgumentException("dispatcher配置出错！", e);
+        }
+        return dispatcherInfo;
+    }
+
+    private static ExecutorInfo parseExecutor(Map executorMap) {
+        ExecutorInfo executorInfo = new ExecutorInfo();
+        if (executorMap == null) {
+            return executorInfo;
+        }
+        if (executorMap.get("threads") != null) {
+            executorInfo.setThreads(Integer.valueOf(executorMap.get("threads").toString()));
+        }
+        if (executorMap.get("queueSize") != null) {
+            executorInfo.setQueueSize(Integer.valueOf(executorMap.get("queueSize").toString()));
+        }
+        return executorInfo;
+    }
+
+    /**
+     * 限制同时执行的任务数，超过后按照拒绝策略处理
+     * 虚拟线程不需要排队等待线程，所以没有队列
+     */
+    private static class BoundedExecutor implements Executor {
+
+        private final Executor executor;
+
+        private final Semaphore permits;
+
+        private final boolean callerRuns;
+
+        private BoundedExecutor(Executor executor, int maxConcurrency, boolean callerRuns) {
+            this.executor = executor;
+            this.permits = new Semaphore(maxConcurrency);
+            this.callerRuns = callerRuns;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire()) {
+                if (callerRuns) {
+                    task.run();
+                    return;
+                }
+                throw new RejectedExecutionException();
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+    }
+
+    /**
+     * 一个服务的线程池，以及服务中单独配置了线程池的方法
+     */
+    private static class ServiceExecutor {
+
+        private final Executor executor;
+
+        private final Map<String, Executor> methodExecutors = new HashMap<>();
+
+        private ServiceExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+    }
+
+}
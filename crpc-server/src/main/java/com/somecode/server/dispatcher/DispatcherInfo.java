@@ -0,0 +1,39 @@
+package com.somecode.server.dispatcher;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 业务线程配置
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DispatcherInfo implements Serializable {
+
+    /**
+     * 执行方式：direct、shared、isolated、virtual
+     */
+    private String mode = "shared";
+
+    /**
+     * 队列满后的拒绝策略：abort、callerRuns
+     */
+    private String rejectPolicy = "abort";
+
+    /**
+     * 所有服务共用的线程池
+     */
+    private ExecutorInfo shared = new ExecutorInfo();
+
+    /**
+     * isolated方式下独立的线程池，键为服务的标注名或者“标注名.方法名”
+     */
+    private Map<String, ExecutorInfo> isolated = new LinkedHashMap<>();
+
+}
@@ -0,0 +1,27 @@
+package com.somecode.server.dispatcher;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 一个业务线程池的配置
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExecutorInfo implements Serializable {
+
+    /**
+     * 线程数，virtual方式下为同时执行的最大请求数
+     */
+    private Integer threads = 200;
+
+    /**
+     * 等待队列的大小，队列满后按照拒绝策略处理，virtual方式下不生效
+     */
+    private Integer queueSize = 1024;
+
+}
@@ -0,0 +1,89 @@
+package com.somecode.server.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程，JDK 21及以上才可用
+ * 这里是Java 8的版本，通过反射调用，用JDK 21构建时jar中META-INF/versions/21下的版本会直接调用
+ */
+public class VirtualThreads {
+
+    /**
+     * Executors.newThreadPerTaskExecutor(ThreadFactory)，不可用时为null
+     */
+    private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+    /**
+     * Thread.ofVirtual()，不可用时为null
+     */
+    private static final MethodHandle OF_VIRTUAL;
+
+    /**
+     * Thread.Builder.name(String, long)，不可用时为null
+     */
+    private static final MethodHandle NAME;
+
+    /**
+     * Thread.Builder.factory()，不可用时为null
+     */
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle newExecutor = null;
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        try {
+            // 按照公开的接口查找，实现类不是公开的
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualClass));
+            name = lookup.findVirtual(builderClass, "name", MethodType.methodType(builderClass, String.class, long.class));
+            factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+            newExecutor = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+        } catch (ReflectiveOperationException e) {
+            // 低于JDK 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+    }
+
+    /**
+     * 不允许创建对象
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器，线程名为name加序号
+     */
+    public static ExecutorService newExecutor(String name) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("虚拟线程需要JDK 21及以上！");
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(), name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(factory);
+        } catch (Throwable e) {
+            throw new IllegalStateException("创建虚拟线程执行器失败！", e);
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.somecode.server.warmup;
+
+import com.somecode.common.codec.FrameEncoder;
+import com.somecode.common.codec.FrameDecoder;
+import com.somecode.common.codec.PayloadCodec;
+import com.somecode.common.codec.Protocol;
+import com.somecode.common.entity.RequestMessage;
+import com.somecode.common.spi.core.CompressAlgorithm;
+import com.somecode.common.spi.core.Serialize;
+import com.somecode.server.cache.MethodCache;
+import com.somecode.server.cache.MethodInvoker;
+import com.somecode.server.configuration.InitServerConfiguration;
+import com.somecode.server.connection.NettyServerHandler;
+import com.somecode.server.dispatcher.Dispatcher;
+import com.somecode.server.dispatcher.DispatcherInfo;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热，在绑定端口、注册到注册中心之前执行
+ * 导出：加载全部实现类并生成调用器，第一个请求不再需要加载类和反射查找方法
+ * 模拟调用：用EmbeddedChannel把构造的请求按照客户端的格式编码，走一遍帧解码、解压、反序列化、执行、序列化、压缩、帧编码的完整流程，
+ * 让这些代码在接收真实请求前被JIT编译
+ */
+public class Warmup {
+
+    /**
+     * 模拟调用使用的客户端帧编码器
+     */
+    private static final FrameEncoder FRAME_ENCODER = new FrameEncoder();
+
+    /**
+     * 不允许创建对象
+     */
+    private Warmup() {
+    }
+
+    /**
+     * 按照配置预热
+     */
+    public static void run(WarmupInfo warmupInfo) {
+        if (!Boolean.TRUE.equals(warmupInfo.getExport())) {
+            return;
+        }
+        List<MethodInvoker> invokers = MethodCache.export();
+        if (warmupInfo.getIterations() <= 0 || warmupInfo.getMethods().isEmpty()) {
+            return;
+        }
+        replay(invokers, warmupInfo);
+    }
+
+    /**
+     * 模拟调用配置的方法
+     * 业务线程使用direct方式，同步方法在当前线程上执行完就已经写回；
+     * 返回CompletableFuture的方法在其他线程上完成后才写回，全部请求发出后最多等待timeout毫秒
+     */
+    private static void replay(List<MethodInvoker> invokers, WarmupInfo warmupInfo) {
+        Serialize serialize = InitServerConfiguration.getSerialize();
+        CompressAlgorithm compressAlgorithm = InitServerConfiguration.getCompressAlgorithm();
+        DispatcherInfo dispatcherInfo = new DispatcherInfo();
+        dispatcherInfo.setMode(Dispatcher.DIRECT);
+        EmbeddedChannel client = new EmbeddedChannel(FRAME_ENCODER);
+        int maxFrameLength = InitServerConfiguration.getTransportInfo().getMaxFrameLength();
+        ResponseCounter responseCounter = new ResponseCounter();
+        EmbeddedChannel server = new EmbeddedChannel(responseCounter,
+                new FrameDecoder(maxFrameLength, Protocol.REQUEST),
+                FRAME_ENCODER, new NettyServerHandler(new Dispatcher(dispatcherInfo)));
+        int requests = 0;
+        try {
+            for (MethodInvoker invoker : invokers) {
+                if (!warmupInfo.getMethods().contains(invoker.getClassName() + "." + invoker.getMethodName())) {
+                    continue;
+                }
+                for (int i = 0; i < warmupInfo.getIterations(); i++) {
+                    // 交替使用名字和id，两种查找方式都预热
+                    RequestMessage requestMessage = newRequest(invoker, i % 2 == 0);
+                    client.writeOutbound(PayloadCodec.encodeRequest(ByteBufAllocator.DEFAULT, i, Protocol.REQUEST,
+                            requestMessage, serialize, compressAlgorithm, 0));
+                    for (Object frame = client.readOutbound(); frame != null; frame = client.readOutbound()) {
+                        server.writeInbound(frame);
+                    }
+                    requests++;
+                }
+            }
+            // 等待异步返回的方法全部写回，超时后不再等待，不影响启动
+            responseCounter.responses.tryAcquire(requests, warmupInfo.getTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 预热失败不影响启动
+            e.printStackTrace();
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 放在服务端通道最靠近出口的位置，截下写回的帧并计数
+     * 异步完成的方法会在其他线程上写回，不经过EmbeddedChannel的出站队列，直接在这里释放
+     */
+    private static class ResponseCounter extends ChannelOutboundHandlerAdapter {
+
+        /**
+         * 每收到一个回复释放一个许可
+         */
+        private final Semaphore responses = new Semaphore(0);
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+            responses.release();
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+        }
+
+    }
+
+    /**
+     * 构造请求，参数使用默认值
+     */
+    private static RequestMessage newRequest(MethodInvoker invoker, boolean byName) {
+        Method method = invoker.getMethod();
+        List<Object> params = null;
+        if (method.getParameterCount() > 0) {
+            params = new ArrayList<>();
+            for (Class<?> paramType : method.getParameterTypes()) {
+                params.add(defaultValue(paramType));
+            }
+        }
+        if (!byName) {
+            return new RequestMessage(null, null, params, null, invoker.getId());
+        }
+        List<String> paramTypeNames = new ArrayList<>();
+        for (Class<?> paramType : method.getParameterTypes()) {
+            paramTypeNames.add(paramType.getName());
+        }
+        return new RequestMessage(invoker.getClassName(), invoker.getMethodName(), params, paramTypeNames, 0);
+    }
+
+    /**
+     * 参数的默认值：基本类型为0，字符串为空串，集合为空集合，有无参构造器的类新建一个对象，其他为null
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (type.isPrimitive()) {
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        if (type == String.class) {
+            return "";
+        }
+        if (type == List.class) {
+            return Arrays.asList();
+        }
+        if (type == Map.class) {
+            return Collections.emptyMap();
+        }
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 根据配置文件中的warmup节点生成配置，没有配置的项使用默认值
+     */
+    public static WarmupInfo parse(Map warmupMap) {
+        WarmupInfo warmupInfo = new WarmupInfo();
+        if (warmupMap == null) {
+            return warmupInfo;
+        }
+        try {
+            if (warmupMap.get("export") != null) {
+                warmupInfo.setExport(Boolean.valueOf(warmupMap.get("export").toString()));
+            }
+            if (warmupMap.get("iterations") != null) {
+                warmupInfo.setIterations(Integer.valueOf(warmupMap.get("iterations").toString()));
+            }
+            if (warmupMap.get("timeout") != null) {
+                warmupInfo.setTimeout(Integer.valueOf(warmupMap.get("timeout").toString()));
+            }
+            if (warmupMap.get("methods") != null) {
+                for (Object method : (List) warmupMap.get("methods")) {
+                    warmupInfo.getMethods().add(method.toString());
+                }
+            }
+        } catch (NumberFormatException | ClassCastException e) {
+            throw new IllegalArgumentException("warmup配置出错！", e);
+        }
+        return warmupInfo;
+    }
+
+}
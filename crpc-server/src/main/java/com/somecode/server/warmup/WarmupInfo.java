@@ -0,0 +1,40 @@
+package com.somecode.server.warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动预热配置
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WarmupInfo implements Serializable {
+
+    /**
+     * 是否在启动时导出全部实现类，生成方法的调用器
+     */
+    private Boolean export = true;
+
+    /**
+     * 每个预热方法模拟调用的次数，0为不模拟调用
+     */
+    private Integer iterations = 0;
+
+    /**
+     * 模拟调用的方法，格式为“标注名.方法名”，同名的重载方法都会调用
+     * 模拟调用会真正执行实现类的方法，只应配置没有副作用的方法
+     */
+    private List<String> methods = new ArrayList<>();
+
+    /**
+     * 等待异步返回的方法完成的最长时间，单位毫秒，超时后不再等待，直接继续启动
+     */
+    private Integer timeout = 3000;
+
+}
@@ -0,0 +1,31 @@
+package com.somecode.server.dispatcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程，JDK 21的版本，放在jar的META-INF/versions/21下，直接调用虚拟线程的API
+ */
+public class VirtualThreads {
+
+    /**
+     * 不允许创建对象
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器，线程名为name加序号
+     */
+    public static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.somecode.test.benchmark;
+
+import com.somecode.server.dispatcher.Dispatcher;
+import com.somecode.server.dispatcher.VirtualThreads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 比较业务线程池与虚拟线程执行阻塞服务的吞吐量
+ * 用法：Main [请求数，默认10000] [每个请求阻塞的时间ms，默认20] [线程池的线程数，默认200]
+ * 每个请求用sleep模拟一次阻塞的数据库调用，虚拟线程需要在JDK 21及以上运行
+ */
+public class Main {
+
+    public static void main(String[] args) throws InterruptedException {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long blockMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        // 先预热一次，再正式测试
+        run(Dispatcher.SHARED, requests, blockMillis, threads);
+        run(Dispatcher.SHARED, requests, blockMillis, threads);
+        if (VirtualThreads.isSupported()) {
+            run(Dispatcher.VIRTUAL, requests, blockMillis, requests);
+            run(Dispatcher.VIRTUAL, requests, blockMillis, requests);
+        } else {
+            System.out.println("当前JDK不支持虚拟线程，只测试业务线程池");
+        }
+        // 业务线程池的线程空闲一段时间才会回收，直接退出
+        System.exit(0);
+    }
+
+    /**
+     * 一次性提交全部请求，等待全部执行完
+     */
+    private static void run(String mode, int requests, long blockMillis, int threads) throws InterruptedException {
+        Map<String, Object> executorMap = new HashMap<>();
+        executorMap.put("threads", threads);
+        executorMap.put("queueSize", requests);
+        Map<String, Object> dispatcherMap = new HashMap<>();
+        dispatcherMap.put("mode", mode);
+        dispatcherMap.put("shared", executorMap);
+        Dispatcher dispatcher = new Dispatcher(Dispatcher.parse(dispatcherMap));
+        CountDownLatch latch = new CountDownLatch(requests);
+        AtomicInteger rejected = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            boolean accepted = dispatcher.dispatch("Benchmark", "block", () -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            });
+            if (!accepted) {
+                rejected.incrementAndGet();
+                latch.countDown();
+            }
+        }
+        latch.await();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(mode + "：请求数" + requests + "，并发上限" + threads + "，耗时" + millis + "ms，吞吐量"
+                + (requests - rejected.get()) * 1000L / Math.max(millis, 1) + "/s，拒绝" + rejected.get());
+    }
+
+}
@@ -13,6 +13,10 @@ public class Main {
         User user = new User();
         user.setName("陈");
         System.out.println(hello.printHello(user));
+        // 异步调用，不阻塞当前线程
+        hello.printHelloAsync(user).thenAccept(System.out::println).join();
+        // 关闭客户端
+        ProxyFactory.shutdown();
     }
 
 }
@@ -3,6 +3,8 @@ package com.somecode.test.server;
 import com.somecode.test.service.Hello;
 import com.somecode.test.service.User;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Hello接口的实现类
  */
@@ -17,4 +19,12 @@ public class HelloImpl implements Hello {
         return user;
     }
 
+    /**
+     * 异步返回，服务端在future完成后写回结果
+     */
+    @Override
+    public CompletableFuture<User> printHelloAsync(User user) {
+        return CompletableFuture.completedFuture(printHello(user));
+    }
+
 }
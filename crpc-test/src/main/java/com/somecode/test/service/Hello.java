@@ -1,5 +1,10 @@
 package com.somecode.test.service;
 
+import com.somecode.common.stub.CrpcService;
+
+import java.util.concurrent.CompletableFuture;
+
+@CrpcService
 public interface Hello {
 
     /**
@@ -7,4 +12,9 @@ public interface Hello {
      */
     public User printHello(User user);
 
+    /**
+     * 异步输出Hello World！
+     */
+    public CompletableFuture<User> printHelloAsync(User user);
+
 }